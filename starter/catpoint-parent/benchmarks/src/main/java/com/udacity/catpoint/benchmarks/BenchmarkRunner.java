@@ -0,0 +1,25 @@
+package com.udacity.catpoint.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of the benchmarks jar. Takes the usual JMH command line options, but writes the
+ * results as JSON to {@code jmh-result.json} unless a result format or file is given, so runs
+ * from different releases can be compared by a script.
+ * <p>
+ * Example: {@code java -jar benchmarks/target/benchmarks.jar SecurityServiceBenchmark -p sensorCount=4,1000}
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf") && !options.contains("-rff")) {
+            options.addAll(List.of("-rf", "json", "-rff", "jmh-result.json"));
+        }
+        Main.main(options.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,104 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.security.data.FakeSecurityRepository;
+import com.udacity.catpoint.security.data.JournalSecurityRepository;
+import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.data.WriteBehindPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures sensor updates in each SecurityRepository implementation.
+ * <p>
+ * The preferences-backed repository writes to the user preferences store, so the forked JVM
+ * points that store at {@code target/jmh-prefs} and the sensors added here are removed again
+ * afterwards. It runs with write-behind, as persisting a large set on every update would
+ * measure nothing but serialization.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.util.prefs.userRoot=target/jmh-prefs")
+public class RepositoryBenchmark {
+
+    @Param({"fake", "pretend", "journal"})
+    private String repositoryType;
+
+    @Param({"4", "1000", "100000", "1000000"})
+    private int sensorCount;
+
+    private SecurityRepository repository;
+    private Path journalDirectory;
+    private final List<Sensor> sensors = new ArrayList<>();
+    private int nextSensor;
+
+    @Setup
+    public void setUp() throws IOException {
+        switch (repositoryType) {
+            case "fake" -> repository = new FakeSecurityRepository();
+            case "pretend" -> repository = new PretendDatabaseSecurityRepositoryImpl(
+                    new WriteBehindPolicy(Duration.ofSeconds(1), Integer.MAX_VALUE));
+            case "journal" -> {
+                journalDirectory = Files.createTempDirectory("catpoint-journal");
+                repository = new JournalSecurityRepository(journalDirectory);
+            }
+            default -> throw new IllegalArgumentException("Unknown repository type " + repositoryType);
+        }
+        SensorType[] sensorTypes = SensorType.values();
+        for (int i = 0; i < sensorCount; i++) {
+            Sensor sensor = new Sensor("Benchmark sensor " + i, sensorTypes[i % sensorTypes.length]);
+            sensors.add(sensor);
+        }
+        repository.updateSensors(sensors);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (repository instanceof PretendDatabaseSecurityRepositoryImpl) {
+            // leave the preferences store as it was found
+            sensors.forEach(repository::removeSensor);
+        }
+        if (repository instanceof AutoCloseable) {
+            ((AutoCloseable) repository).close();
+        }
+        if (journalDirectory != null) {
+            try (Stream<Path> files = Files.walk(journalDirectory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    public int updateSensor() {
+        Sensor sensor = sensors.get(nextSensor);
+        nextSensor = (nextSensor + 1) % sensors.size();
+        sensor.setActive(!sensor.getActive());
+        repository.updateSensor(sensor);
+        return repository.getActiveSensorCount();
+    }
+}
@@ -0,0 +1,115 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.FakeSecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.data.StatusListener;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the SecurityService operations the GUI and sensors drive, against the in-memory
+ * repository so only the service's own cost is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SecurityServiceBenchmark {
+
+    @Param({"4", "1000", "100000", "1000000"})
+    private int sensorCount;
+
+    @Param({"0", "1", "8"})
+    private int listenerCount;
+
+    private SecurityService securityService;
+    private Sensor[] sensors;
+    private int nextSensor;
+    private ArmingStatus nextArmingStatus = ArmingStatus.DISARMED;
+    private final BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    private boolean catInImage;
+
+    /**
+     * Counts events, so listener calls can't be optimized away.
+     */
+    private static class CountingListener implements StatusListener {
+        private long events;
+
+        @Override
+        public void notify(AlarmStatus status) {
+            events++;
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+            events++;
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+            events++;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        FakeSecurityRepository repository = new FakeSecurityRepository();
+        // the stub image service alternates between cat and no cat on every frame
+        securityService = new SecurityService(repository, (image, threshold) -> catInImage = !catInImage);
+        repository.getSensors().forEach(repository::removeSensor);
+        SensorType[] sensorTypes = SensorType.values();
+        for (int i = 0; i < sensorCount; i++) {
+            repository.addSensor(new Sensor("Sensor " + i, sensorTypes[i % sensorTypes.length]));
+        }
+        for (int i = 0; i < listenerCount; i++) {
+            securityService.addStatusListener(new CountingListener());
+        }
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        sensors = repository.getSensors().toArray(new Sensor[0]);
+    }
+
+    @Benchmark
+    public AlarmStatus changeSensorActivationStatus() {
+        Sensor sensor = sensors[nextSensor];
+        nextSensor = (nextSensor + 1) % sensors.length;
+        securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+        return securityService.getAlarmStatus();
+    }
+
+    @Benchmark
+    public ArmingStatus setArmingStatus() {
+        nextArmingStatus = nextArmingStatus == ArmingStatus.DISARMED ? ArmingStatus.ARMED_HOME : ArmingStatus.DISARMED;
+        securityService.setArmingStatus(nextArmingStatus);
+        return securityService.getArmingStatus();
+    }
+
+    @Benchmark
+    public AlarmStatus processImage() {
+        securityService.processImage(image);
+        return securityService.getAlarmStatus();
+    }
+
+    @Benchmark
+    public Set<Sensor> getSensors() {
+        return securityService.getSensors();
+    }
+}
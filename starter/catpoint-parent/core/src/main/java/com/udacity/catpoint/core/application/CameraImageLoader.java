@@ -0,0 +1,135 @@
+package com.udacity.catpoint.core.application;
+
+import com.udacity.catpoint.image.service.ImageAnalysisExecutors;
+import com.udacity.catpoint.image.service.ImageScaler;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Loads pictures for the camera panel off the event thread. Each picture is decoded once and
+ * turned into a preview sized for the panel and a copy sized for the classifier; the
+ * full-resolution original is dropped. Recently loaded pictures are kept, so choosing one again
+ * shows it right away.
+ */
+class CameraImageLoader {
+
+    /**
+     * A loaded picture, ready to show and to scan.
+     */
+    static final class CameraImage {
+        private final BufferedImage preview;
+        private final BufferedImage forClassifier;
+
+        private CameraImage(BufferedImage preview, BufferedImage forClassifier) {
+            this.preview = preview;
+            this.forClassifier = forClassifier;
+        }
+
+        BufferedImage getPreview() {
+            return preview;
+        }
+
+        BufferedImage getForClassifier() {
+            return forClassifier;
+        }
+    }
+
+    /**
+     * Identifies a file's contents well enough to notice it was replaced since it was loaded.
+     */
+    private static final class Key {
+        private final String path;
+        private final long lastModified;
+        private final long length;
+
+        private Key(File file) {
+            this.path = file.getAbsolutePath();
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return lastModified == key.lastModified && length == key.length && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, lastModified, length);
+        }
+    }
+
+    private final int previewWidth;
+    private final int previewHeight;
+    private final int classifierMaxDimension;
+    private final int maxEntries;
+    private final ExecutorService decoders = ImageAnalysisExecutors.newPlatformThreadExecutor(2);
+
+    // access-ordered, so iteration starts at the least recently used entry; guarded by itself
+    private final LinkedHashMap<Key, CameraImage> loaded = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param classifierMaxDimension longest side, in pixels, of the copy sent for classification
+     * @param maxEntries             how many loaded pictures to keep
+     */
+    CameraImageLoader(int previewWidth, int previewHeight, int classifierMaxDimension, int maxEntries) {
+        this.previewWidth = previewWidth;
+        this.previewHeight = previewHeight;
+        this.classifierMaxDimension = classifierMaxDimension;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return completes with the loaded picture, or fails if the file could not be read or is not
+     * a picture
+     */
+    CompletableFuture<CameraImage> load(File file) {
+        Key key = new Key(file);
+        CameraImage cached;
+        synchronized (loaded) {
+            cached = loaded.get(key);
+        }
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            CameraImage image = decode(file);
+            synchronized (loaded) {
+                loaded.put(key, image);
+                Iterator<Map.Entry<Key, CameraImage>> it = loaded.entrySet().iterator();
+                while (loaded.size() > maxEntries && it.hasNext()) {
+                    it.next();
+                    it.remove();
+                }
+            }
+            return image;
+        }, decoders);
+    }
+
+    private CameraImage decode(File file) {
+        try {
+            BufferedImage original = ImageIO.read(file);
+            if (original == null) {
+                throw new IOException("Not a supported image: " + file);
+            }
+            // the preview is scaled from the classifier's copy, so the original is only scaled once
+            BufferedImage forClassifier = ImageScaler.scaleToFit(original, classifierMaxDimension);
+            return new CameraImage(ImageScaler.scale(forClassifier, previewWidth, previewHeight), forClassifier);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
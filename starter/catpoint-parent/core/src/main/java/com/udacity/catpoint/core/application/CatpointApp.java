@@ -1,11 +1,20 @@
 package com.udacity.catpoint.core.application;
 
+import com.udacity.catpoint.core.headless.HeadlessApp;
+
+import java.util.Arrays;
+
 /**
- * This is the main class that launches the application.
+ * This is the main class that launches the application. With {@code --headless} only the
+ * security engine runs, controlled from the command line or over HTTP; see {@link HeadlessApp}.
  */
 public class CatpointApp {
-    public static void main(String[] args) {
-        CatpointGui gui = new CatpointGui();
-        gui.setVisible(true);
+    public static void main(String[] args) throws Exception {
+        // the GUI is only referenced from its own branch, so a headless run never loads Swing
+        if (Arrays.asList(args).contains("--headless")) {
+            HeadlessApp.run(args);
+        } else {
+            CatpointGui.launch();
+        }
     }
 }
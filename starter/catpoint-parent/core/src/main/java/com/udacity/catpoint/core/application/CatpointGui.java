@@ -1,5 +1,6 @@
 package com.udacity.catpoint.core.application;
 
+import com.udacity.catpoint.image.service.DeferredImageService;
 import com.udacity.catpoint.image.service.ImageService;
 import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
 import com.udacity.catpoint.security.data.SecurityRepository;
@@ -8,38 +9,103 @@ import com.udacity.catpoint.image.service.FakeImageService;
 
 
 import net.miginfocom.swing.MigLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 /**
  * This is the primary JFrame for the application that contains all the top-level JPanels.
  *
  * We're not using any dependency injection framework, so this class also handles constructing
  * all our dependencies and providing them to other classes as necessary.
+ *
+ * The repository and the image service are created on background threads while the window is
+ * built. The panels are added once the stored state has loaded; the image service may still be
+ * starting then, in which case the first scan waits for it.
  */
 public class CatpointGui extends JFrame {
-    private SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
-    private ImageService imageService = new FakeImageService();
-    private SecurityService securityService = new SecurityService(securityRepository, imageService);
-    private DisplayPanel displayPanel = new DisplayPanel(securityService);
-    private ControlPanel controlPanel = new ControlPanel(securityService);
-    private SensorPanel sensorPanel = new SensorPanel(securityService);
-    private ImagePanel imagePanel = new ImagePanel(securityService);
-
-    public CatpointGui() {
+    private final Logger log = LoggerFactory.getLogger(CatpointGui.class);
+
+    private final StartupTimer startupTimer;
+    // events arrive on whatever thread caused them; the panels get the latest state on the event
+    // thread, at most this many times a second
+    private UiUpdateBridge uiUpdateBridge = new UiUpdateBridge(30);
+    private JPanel mainPanel = new JPanel(new MigLayout());
+    private JLabel loadingLabel = new JLabel("Loading sensors...");
+
+    private CatpointGui(CompletableFuture<? extends SecurityRepository> securityRepository,
+                        CompletableFuture<? extends ImageService> imageService, StartupTimer startupTimer) {
+        this.startupTimer = startupTimer;
+
         setLocation(100, 100);
         setSize(600, 850);
         setTitle("Very Secure App");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-        JPanel mainPanel = new JPanel();
-        mainPanel.setLayout(new MigLayout());
-        mainPanel.add(displayPanel, "wrap");
-        mainPanel.add(imagePanel, "wrap");
-        mainPanel.add(controlPanel, "wrap");
-        mainPanel.add(sensorPanel);
-
+        mainPanel.add(loadingLabel);
         getContentPane().add(mainPanel);
 
+        securityRepository.whenComplete((repository, failure) -> SwingUtilities.invokeLater(() -> {
+            if (failure != null) {
+                log.error("Unable to load the security state", failure);
+                loadingLabel.setText("Unable to load the security state.");
+                return;
+            }
+            addPanels(new SecurityService(repository, new DeferredImageService(imageService)));
+        }));
+    }
+
+    private void addPanels(SecurityService securityService) {
+        startupTimer.time("panels", () -> {
+            securityService.addStatusListener(uiUpdateBridge);
+            mainPanel.remove(loadingLabel);
+            mainPanel.add(new DisplayPanel(securityService, uiUpdateBridge), "wrap");
+            mainPanel.add(new ImagePanel(securityService, uiUpdateBridge), "wrap");
+            mainPanel.add(new ControlPanel(securityService), "wrap");
+            mainPanel.add(new SensorPanel(securityService, uiUpdateBridge));
+            mainPanel.revalidate();
+            mainPanel.repaint();
+            return null;
+        });
+        startupTimer.milestone("interactive");
+    }
+
+    private static CompletableFuture<SecurityRepository> startRepository(StartupTimer startupTimer) {
+        return startInBackground("repository", PretendDatabaseSecurityRepositoryImpl::new, startupTimer);
+    }
+
+    private static CompletableFuture<ImageService> startImageService(StartupTimer startupTimer) {
+        return startInBackground("image service", FakeImageService::new, startupTimer);
+    }
+
+    /**
+     * Creates a back end on its own daemon thread.
+     */
+    private static <T> CompletableFuture<T> startInBackground(String phase, Supplier<T> factory, StartupTimer startupTimer) {
+        return CompletableFuture.supplyAsync(() -> startupTimer.time(phase, factory), r -> {
+            Thread thread = new Thread(r, "startup-" + phase.replace(' ', '-'));
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    /**
+     * Builds and shows the window. Swing components are only touched on the event thread,
+     * building them included. The back ends start loading right away, so they overlap with the
+     * toolkit starting up as well as with building the window.
+     */
+    static void launch() {
+        StartupTimer startupTimer = new StartupTimer();
+        CompletableFuture<SecurityRepository> securityRepository = startRepository(startupTimer);
+        CompletableFuture<ImageService> imageService = startImageService(startupTimer);
+        SwingUtilities.invokeLater(() -> {
+            CatpointGui gui = startupTimer.time("window",
+                    () -> new CatpointGui(securityRepository, imageService, startupTimer));
+            gui.setVisible(true);
+            startupTimer.milestone("window shown");
+        });
     }
 }
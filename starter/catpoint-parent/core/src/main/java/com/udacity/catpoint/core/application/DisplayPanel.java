@@ -16,11 +16,11 @@ public class DisplayPanel extends JPanel implements StatusListener {
 
     private JLabel currentStatusLabel;
 
-    public DisplayPanel(SecurityService securityService) {
+    public DisplayPanel(SecurityService securityService, UiUpdateBridge uiUpdateBridge) {
         super();
         setLayout(new MigLayout());
 
-        securityService.addStatusListener(this);
+        uiUpdateBridge.addStatusListener(this);
 
         JLabel panelLabel = new JLabel("Very Secure Home Security");
         JLabel systemStatusLabel = new JLabel("System Status:");
@@ -39,7 +39,7 @@ public class DisplayPanel extends JPanel implements StatusListener {
     @Override
     public void notify(AlarmStatus status) {
         currentStatusLabel.setText(status.getDescription());
-        currentStatusLabel.setBackground(status.getColor());
+        currentStatusLabel.setBackground(StyleService.colorOf(status));
         currentStatusLabel.setOpaque(true);
     }
 
@@ -6,12 +6,10 @@ import com.udacity.catpoint.security.data.StatusListener;
 import com.udacity.catpoint.security.service.SecurityService;
 import net.miginfocom.swing.MigLayout;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.IOException;
 
 /** Panel containing the 'camera' output. Allows users to 'refresh' the camera
  * by uploading their own picture, and 'scan' the picture, sending it for image analysis
@@ -26,11 +24,17 @@ public class ImagePanel extends JPanel implements StatusListener {
     private int IMAGE_WIDTH = 300;
     private int IMAGE_HEIGHT = 225;
 
-    public ImagePanel(SecurityService securityService) {
+    // large enough for either image service; the full-size photo is never kept
+    private static final int CLASSIFIER_MAX_DIMENSION = 1024;
+    private final CameraImageLoader cameraImageLoader =
+            new CameraImageLoader(IMAGE_WIDTH, IMAGE_HEIGHT, CLASSIFIER_MAX_DIMENSION, 8);
+    private int latestLoad; // only touched on the event thread
+
+    public ImagePanel(SecurityService securityService, UiUpdateBridge uiUpdateBridge) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
-        securityService.addStatusListener(this);
+        uiUpdateBridge.addStatusListener(this);
 
         cameraHeader = new JLabel("Camera Feed");
         cameraHeader.setFont(StyleService.HEADING_FONT);
@@ -50,20 +54,36 @@ public class ImagePanel extends JPanel implements StatusListener {
             if(chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
                 return;
             }
-            try {
-                currentCameraImage = ImageIO.read(chooser.getSelectedFile());
-                Image tmp = new ImageIcon(currentCameraImage).getImage();
-                cameraLabel.setIcon(new ImageIcon(tmp.getScaledInstance(IMAGE_WIDTH, IMAGE_HEIGHT, Image.SCALE_SMOOTH)));
-            } catch (IOException |NullPointerException ioe) {
-                JOptionPane.showMessageDialog(null, "Invalid image selected.");
-            }
-            repaint();
+            File selected = chooser.getSelectedFile();
+            int load = ++latestLoad;
+            addPictureButton.setEnabled(false);
+            cameraImageLoader.load(selected).whenComplete((image, failure) ->
+                    SwingUtilities.invokeLater(() -> {
+                        if (load != latestLoad) {
+                            return; // another picture was chosen meanwhile
+                        }
+                        addPictureButton.setEnabled(true);
+                        if (failure != null) {
+                            JOptionPane.showMessageDialog(null, "Invalid image selected.");
+                            return;
+                        }
+                        currentCameraImage = image.getForClassifier();
+                        cameraLabel.setIcon(new ImageIcon(image.getPreview()));
+                        repaint();
+                    }));
         });
 
         //button that sends the image to the image service
         JButton scanPictureButton = new JButton("Scan Picture");
         scanPictureButton.addActionListener(e -> {
-            securityService.processImage(currentCameraImage);
+            scanPictureButton.setEnabled(false);
+            securityService.processImageAsync(currentCameraImage).whenComplete((cat, failure) ->
+                    SwingUtilities.invokeLater(() -> {
+                        scanPictureButton.setEnabled(true);
+                        if (failure != null) {
+                            JOptionPane.showMessageDialog(null, "Unable to scan the picture.");
+                        }
+                    }));
         });
 
         add(cameraHeader, "span 3, wrap");
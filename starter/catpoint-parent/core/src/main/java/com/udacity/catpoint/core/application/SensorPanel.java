@@ -2,6 +2,7 @@ package com.udacity.catpoint.core.application;
 
 import com.udacity.catpoint.security.data.AlarmStatus;
 import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorActivation;
 import com.udacity.catpoint.security.data.SensorType;
 import com.udacity.catpoint.core.service.StyleService;
 import com.udacity.catpoint.security.data.StatusListener;
@@ -9,13 +10,25 @@ import com.udacity.catpoint.security.service.SecurityService;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Panel that allows users to add sensors to their system. Sensors may be
  * manually set to "active" and "inactive" to test the system.
+ * <p>
+ * Sensors are listed in a table backed by a {@link SensorTableModel}, which only renders the rows
+ * in view and updates the rows that changed, so any number of sensors can be managed. The list
+ * can be filtered by sensor type and state, and the buttons act on the selected sensors.
  */
 public class SensorPanel extends JPanel implements StatusListener {
 
+    private static final String ALL_TYPES = "All types";
+    private static final String ANY_STATE = "Any state";
+    private static final String ACTIVE = "Active";
+    private static final String INACTIVE = "Inactive";
+
     private SecurityService securityService;
 
     private JLabel panelLabel = new JLabel("Sensor Management");
@@ -25,10 +38,18 @@ public class SensorPanel extends JPanel implements StatusListener {
     private JComboBox newSensorTypeDropdown = new JComboBox(SensorType.values());
     private JButton addNewSensorButton = new JButton("Add New Sensor");
 
+    private SensorTableModel sensorTableModel = new SensorTableModel();
+    private JTable sensorTable = new JTable(sensorTableModel);
+    private JComboBox<Object> typeFilterDropdown = new JComboBox<>();
+    private JComboBox<String> stateFilterDropdown = new JComboBox<>(new String[]{ANY_STATE, ACTIVE, INACTIVE});
+    private JButton activateButton = new JButton("Activate");
+    private JButton deactivateButton = new JButton("Deactivate");
+    private JButton removeButton = new JButton("Remove Sensor");
+
     private JPanel sensorListPanel;
     private JPanel newSensorPanel;
 
-    public SensorPanel(SecurityService securityService) {
+    public SensorPanel(SecurityService securityService, UiUpdateBridge uiUpdateBridge) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
@@ -39,12 +60,11 @@ public class SensorPanel extends JPanel implements StatusListener {
                         SensorType.valueOf(newSensorTypeDropdown.getSelectedItem().toString()))));
 
         newSensorPanel = buildAddSensorPanel();
-        sensorListPanel = new JPanel();
-        sensorListPanel.setLayout(new MigLayout());
+        sensorListPanel = buildSensorListPanel();
 
-        securityService.addStatusListener(this);
+        uiUpdateBridge.addStatusListener(this);
 
-        updateSensorList(sensorListPanel);
+        updateSensorList();
 
         add(panelLabel, "wrap");
         add(newSensorPanel, "span");
@@ -66,60 +86,86 @@ public class SensorPanel extends JPanel implements StatusListener {
     }
 
     /**
-     * Requests the current list of sensors and updates the provided panel to display them. Sensors
-     * will display in the order that they are created.
-     * @param p The Panel to populate with the current list of sensors
+     * Builds the panel with the filters, the sensor table and the buttons acting on selected sensors
+     */
+    private JPanel buildSensorListPanel() {
+        typeFilterDropdown.addItem(ALL_TYPES);
+        for (SensorType sensorType : SensorType.values()) {
+            typeFilterDropdown.addItem(sensorType);
+        }
+        typeFilterDropdown.addActionListener(e -> updateFilter());
+        stateFilterDropdown.addActionListener(e -> updateFilter());
+
+        sensorTable.setFillsViewportHeight(true);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.NAME_COLUMN).setPreferredWidth(300);
+        activateButton.addActionListener(e -> setSensorActivity(getSelectedSensors(), true));
+        deactivateButton.addActionListener(e -> setSensorActivity(getSelectedSensors(), false));
+        removeButton.addActionListener(e -> removeSensors(getSelectedSensors()));
+
+        JPanel p = new JPanel();
+        p.setLayout(new MigLayout());
+        p.add(new JLabel("Show:"));
+        p.add(typeFilterDropdown);
+        p.add(stateFilterDropdown, "wrap");
+        //hard code some sizes, tsk tsk
+        p.add(new JScrollPane(sensorTable), "span, width 500:500:500, height 200:200:200, wrap");
+        p.add(activateButton, "span, split 3");
+        p.add(deactivateButton);
+        p.add(removeButton);
+        return p;
+    }
+
+    private void updateFilter() {
+        Object type = typeFilterDropdown.getSelectedItem();
+        Object state = stateFilterDropdown.getSelectedItem();
+        sensorTableModel.setFilter(type instanceof SensorType ? (SensorType) type : null,
+                ACTIVE.equals(state) ? Boolean.TRUE : INACTIVE.equals(state) ? Boolean.FALSE : null);
+    }
+
+    private List<Sensor> getSelectedSensors() {
+        List<Sensor> selected = new ArrayList<>();
+        for (int row : sensorTable.getSelectedRows()) {
+            selected.add(sensorTableModel.getSensorAt(row));
+        }
+        return selected;
+    }
+
+    /**
+     * Shows the current sensors, updating only the rows that changed since the last time.
      */
-    private void updateSensorList(JPanel p) {
-        p.removeAll();
-        securityService.getSensors().stream().sorted().forEach(s -> {
-            JLabel sensorLabel = new JLabel(String.format("%s(%s): %s", s.getName(),  s.getSensorType().toString(),(s.getActive() ? "Active" : "Inactive")));
-            JButton sensorToggleButton = new JButton((s.getActive() ? "Deactivate" : "Activate"));
-            JButton sensorRemoveButton = new JButton("Remove Sensor");
-
-            sensorToggleButton.addActionListener(e -> setSensorActivity(s, !s.getActive()) );
-            sensorRemoveButton.addActionListener(e -> removeSensor(s));
-
-            //hard code some sizes, tsk tsk
-            p.add(sensorLabel, "width 300:300:300");
-            p.add(sensorToggleButton, "width 100:100:100");
-            p.add(sensorRemoveButton, "wrap");
-        });
-
-        repaint();
-        revalidate();
+    private void updateSensorList() {
+        sensorTableModel.update(securityService.getSensorSnapshot());
     }
 
     /**
-     * Asks the securityService to change a sensor activation status and then rebuilds the current sensor list
-     * @param sensor The sensor to update
-     * @param isActive The sensor's activation status
+     * Asks the securityService to change the activation status of sensors, as one batch, and then
+     * updates the sensor list
+     * @param sensors The sensors to update
+     * @param isActive The sensors' activation status
      */
-    private void setSensorActivity(Sensor sensor, Boolean isActive) {
-        securityService.changeSensorActivationStatus(sensor, isActive);
-        updateSensorList(sensorListPanel);
+    private void setSensorActivity(List<Sensor> sensors, boolean isActive) {
+        securityService.changeSensorActivationStatus(sensors.stream()
+                .map(sensor -> new SensorActivation(sensor, isActive))
+                .collect(Collectors.toList()));
+        updateSensorList();
     }
 
     /**
-     * Adds a sensor to the securityService and then rebuilds the sensor list
+     * Adds a sensor to the securityService and then updates the sensor list
      * @param sensor The sensor to add
      */
     private void addSensor(Sensor sensor) {
-        if(securityService.getSensors().size() < 4) {
-            securityService.addSensor(sensor);
-            updateSensorList(sensorListPanel);
-        } else {
-            JOptionPane.showMessageDialog(null, "To add more than 4 sensors, please subscribe to our Premium Membership!");
-        }
+        securityService.addSensor(sensor);
+        updateSensorList();
     }
 
     /**
-     * Remove a sensor from the securityService and then rebuild the sensor list
-     * @param sensor The sensor to remove
+     * Remove sensors from the securityService, as one batch, and then update the sensor list
+     * @param sensors The sensors to remove
      */
-    private void removeSensor(Sensor sensor) {
-        securityService.removeSensor(sensor);
-        updateSensorList(sensorListPanel);
+    private void removeSensors(List<Sensor> sensors) {
+        securityService.removeSensors(sensors);
+        updateSensorList();
     }
 
     @Override
@@ -134,6 +180,6 @@ public class SensorPanel extends JPanel implements StatusListener {
 
     @Override
     public void sensorStatusChanged() {
-        updateSensorList(sensorListPanel);
+        updateSensorList();
     }
 }
@@ -0,0 +1,273 @@
+package com.udacity.catpoint.core.application;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorSnapshot;
+import com.udacity.catpoint.security.data.SensorType;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Table model behind the sensor list. It shows the sensors of a {@link SensorSnapshot} that pass
+ * the type and state filters, in snapshot order, and turns each refresh into row-level insert,
+ * delete and update events, so the table only repaints rows that changed no matter how many
+ * sensors there are.
+ * <p>
+ * A row remembers the name, type and active state it was last shown with, since sensors change
+ * in place, and a row whose sensor was renamed without moving is updated like a toggled one. When
+ * the snapshot version is unchanged the old and new rows are both in snapshot order and are
+ * matched by position in the snapshot; otherwise they are matched by sensor. A refresh that
+ * changes many rows, or moves a renamed sensor, is sent as a single data-changed event instead.
+ * Only used on the event thread.
+ */
+class SensorTableModel extends AbstractTableModel {
+
+    static final int NAME_COLUMN = 0;
+    static final int TYPE_COLUMN = 1;
+    static final int STATE_COLUMN = 2;
+
+    private static final String[] COLUMN_NAMES = {"Name", "Type", "State"};
+    // beyond this many row events a full refresh is cheaper for the table
+    private static final int MAX_ROW_EVENTS = 256;
+
+    private static final class Row {
+        private final Sensor sensor;
+        private final int snapshotIndex;
+        private final String name;
+        private final SensorType sensorType;
+        private final boolean active;
+
+        private Row(Sensor sensor, int snapshotIndex, boolean active) {
+            this.sensor = sensor;
+            this.snapshotIndex = snapshotIndex;
+            this.name = sensor.getName();
+            this.sensorType = sensor.getSensorType();
+            this.active = active;
+        }
+
+        private boolean shownLike(Row other) {
+            return active == other.active && name.equals(other.name) && sensorType == other.sensorType;
+        }
+    }
+
+    /**
+     * One step of turning the shown rows into the new ones, at a position of the rows as they are
+     * after the steps before it.
+     */
+    private static final class Change {
+        private static final int INSERT = 0;
+        private static final int DELETE = 1;
+        private static final int UPDATE = 2;
+
+        private final int kind;
+        private final int position;
+        private final Row row;
+
+        private Change(int kind, int position, Row row) {
+            this.kind = kind;
+            this.position = position;
+            this.row = row;
+        }
+    }
+
+    private List<Row> rows = new ArrayList<>();
+    private SensorSnapshot snapshot = SensorSnapshot.EMPTY;
+    private SensorType typeFilter;
+    private Boolean activeFilter;
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        Row row = rows.get(rowIndex);
+        switch (columnIndex) {
+            case NAME_COLUMN:
+                return row.name;
+            case TYPE_COLUMN:
+                return row.sensorType;
+            default:
+                return row.active ? "Active" : "Inactive";
+        }
+    }
+
+    Sensor getSensorAt(int rowIndex) {
+        return rows.get(rowIndex).sensor;
+    }
+
+    /**
+     * Only shows sensors of the given type, null for any, and active state, null for either.
+     */
+    void setFilter(SensorType typeFilter, Boolean activeFilter) {
+        this.typeFilter = typeFilter;
+        this.activeFilter = activeFilter;
+        rows = filter(snapshot);
+        fireTableDataChanged();
+    }
+
+    /**
+     * Shows the sensors of the snapshot, firing events for the rows that differ from those shown.
+     */
+    void update(SensorSnapshot newSnapshot) {
+        List<Row> newRows = filter(newSnapshot);
+        List<Change> changes = newSnapshot.getVersion() == snapshot.getVersion()
+                ? diffByPosition(rows, newRows) : diffBySensor(rows, newRows);
+        snapshot = newSnapshot;
+        if (changes == null) {
+            rows = newRows;
+            fireTableDataChanged();
+            return;
+        }
+        apply(changes, newRows);
+    }
+
+    private List<Row> filter(SensorSnapshot source) {
+        List<Row> filtered = new ArrayList<>();
+        int index = 0;
+        for (Sensor sensor : source.getSensors()) {
+            boolean active = sensor.getActive();
+            if ((typeFilter == null || sensor.getSensorType() == typeFilter)
+                    && (activeFilter == null || activeFilter == active)) {
+                filtered.add(new Row(sensor, index, active));
+            }
+            index++;
+        }
+        return filtered;
+    }
+
+    /**
+     * Both lists are in order of the same snapshot, so rows can be merged by their index in it.
+     */
+    private static List<Change> diffByPosition(List<Row> oldRows, List<Row> newRows) {
+        List<Change> changes = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        int position = 0;
+        while (i < oldRows.size() || j < newRows.size()) {
+            Row oldRow = i < oldRows.size() ? oldRows.get(i) : null;
+            Row newRow = j < newRows.size() ? newRows.get(j) : null;
+            if (newRow == null || (oldRow != null && oldRow.snapshotIndex < newRow.snapshotIndex)) {
+                changes.add(new Change(Change.DELETE, position, null));
+                i++;
+            } else if (oldRow == null || newRow.snapshotIndex < oldRow.snapshotIndex) {
+                changes.add(new Change(Change.INSERT, position++, newRow));
+                j++;
+            } else {
+                if (!oldRow.shownLike(newRow)) {
+                    changes.add(new Change(Change.UPDATE, position, newRow));
+                }
+                position++;
+                i++;
+                j++;
+            }
+            if (changes.size() > MAX_ROW_EVENTS) {
+                return null;
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Sensors were added, removed or moved; rows are matched by sensor instead.
+     *
+     * @return null if a sensor moved, which only a full refresh can show
+     */
+    private static List<Change> diffBySensor(List<Row> oldRows, List<Row> newRows) {
+        if (Math.abs(oldRows.size() - newRows.size()) > MAX_ROW_EVENTS) {
+            return null;
+        }
+        Set<Sensor> oldSensors = new HashSet<>();
+        oldRows.forEach(row -> oldSensors.add(row.sensor));
+        Set<Sensor> newSensors = new HashSet<>();
+        newRows.forEach(row -> newSensors.add(row.sensor));
+
+        List<Change> changes = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        int position = 0;
+        while (i < oldRows.size() || j < newRows.size()) {
+            Row oldRow = i < oldRows.size() ? oldRows.get(i) : null;
+            Row newRow = j < newRows.size() ? newRows.get(j) : null;
+            if (oldRow != null && newRow != null && oldRow.sensor.equals(newRow.sensor)) {
+                if (!oldRow.shownLike(newRow)) {
+                    changes.add(new Change(Change.UPDATE, position, newRow));
+                }
+                position++;
+                i++;
+                j++;
+            } else if (oldRow != null && !newSensors.contains(oldRow.sensor)) {
+                changes.add(new Change(Change.DELETE, position, null));
+                i++;
+            } else if (newRow != null && !oldSensors.contains(newRow.sensor)) {
+                changes.add(new Change(Change.INSERT, position++, newRow));
+                j++;
+            } else {
+                return null;
+            }
+            if (changes.size() > MAX_ROW_EVENTS) {
+                return null;
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Applies the changes to the shown rows, firing one event per run of neighbouring changes of
+     * the same kind.
+     */
+    private void apply(List<Change> changes, List<Row> newRows) {
+        int start = 0;
+        while (start < changes.size()) {
+            Change first = changes.get(start);
+            int end = start + 1;
+            while (end < changes.size() && continues(changes.get(end - 1), changes.get(end))) {
+                end++;
+            }
+            int count = end - start;
+            switch (first.kind) {
+                case Change.INSERT:
+                    for (int k = start; k < end; k++) {
+                        rows.add(changes.get(k).position, changes.get(k).row);
+                    }
+                    fireTableRowsInserted(first.position, first.position + count - 1);
+                    break;
+                case Change.DELETE:
+                    rows.subList(first.position, first.position + count).clear();
+                    fireTableRowsDeleted(first.position, first.position + count - 1);
+                    break;
+                default:
+                    for (int k = start; k < end; k++) {
+                        rows.set(changes.get(k).position, changes.get(k).row);
+                    }
+                    fireTableRowsUpdated(first.position, changes.get(end - 1).position);
+                    break;
+            }
+            start = end;
+        }
+        // the same rows, but unchanged ones here still carry their index in the previous snapshot
+        rows = newRows;
+    }
+
+    private static boolean continues(Change previous, Change next) {
+        if (previous.kind != next.kind) {
+            return false;
+        }
+        // deleting a row moves the next one up into its position
+        return next.position == (previous.kind == Change.DELETE ? previous.position : previous.position + 1);
+    }
+}
@@ -0,0 +1,38 @@
+package com.udacity.catpoint.core.application;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Logs how long each phase of startup took, and when milestones such as the window becoming
+ * usable were reached. Phases may run on different threads and overlap.
+ */
+class StartupTimer {
+
+    private final Logger log = LoggerFactory.getLogger(StartupTimer.class);
+
+    private final long startedAt = System.nanoTime();
+
+    /**
+     * Runs one phase on the calling thread and records how long it took, whether or not it
+     * succeeded.
+     */
+    <T> T time(String phase, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            log.info("Startup phase '{}' took {} ms", phase, Duration.ofNanos(System.nanoTime() - start).toMillis());
+        }
+    }
+
+    /**
+     * Records that a milestone was reached, measured from when the timer was created.
+     */
+    void milestone(String milestone) {
+        log.info("Startup reached '{}' after {} ms", milestone, Duration.ofNanos(System.nanoTime() - startedAt).toMillis());
+    }
+}
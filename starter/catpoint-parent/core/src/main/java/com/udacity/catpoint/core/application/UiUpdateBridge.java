@@ -0,0 +1,139 @@
+package com.udacity.catpoint.core.application;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.StatusListener;
+
+import javax.swing.*;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Carries SecurityService events to the Swing panels. The bridge listens to the service on
+ * whatever thread events are sent from and only records the latest state: the alarm status, the
+ * cat status and whether sensors changed. That state is handed to the panels on the event thread
+ * at most {@code maxUpdatesPerSecond} times a second, so a burst of events costs the UI one update
+ * rather than one per event, and the panels never see a state older than the one before.
+ * <p>
+ * A panel is only told about what changed since its last update: a new alarm status, a new cat
+ * status, or that sensors changed at least once.
+ */
+public class UiUpdateBridge implements StatusListener {
+
+    private final List<StatusListener> uiListeners = new CopyOnWriteArrayList<>();
+    private final long updateIntervalMillis;
+    private final Timer updateTimer;
+
+    // latest state from the service; guarded by this
+    private AlarmStatus alarmStatus;
+    private Boolean catDetected;
+    private boolean sensorsChanged;
+    private boolean updateScheduled;
+
+    // what the panels were last told; only used on the event thread
+    private AlarmStatus shownAlarmStatus;
+    private Boolean shownCatDetected;
+    private long lastUpdateAt;
+
+    public UiUpdateBridge(int maxUpdatesPerSecond) {
+        if (maxUpdatesPerSecond < 1) {
+            throw new IllegalArgumentException("Need at least one update per second");
+        }
+        this.updateIntervalMillis = 1000 / maxUpdatesPerSecond;
+        this.updateTimer = new Timer(0, e -> update());
+        updateTimer.setRepeats(false);
+    }
+
+    /**
+     * Adds a panel to update on the event thread.
+     */
+    public void addStatusListener(StatusListener uiListener) {
+        uiListeners.add(uiListener);
+    }
+
+    public void removeStatusListener(StatusListener uiListener) {
+        uiListeners.remove(uiListener);
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        synchronized (this) {
+            alarmStatus = status;
+        }
+        scheduleUpdate();
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        synchronized (this) {
+            this.catDetected = catDetected;
+        }
+        scheduleUpdate();
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        synchronized (this) {
+            sensorsChanged = true;
+        }
+        scheduleUpdate();
+    }
+
+    /**
+     * Makes sure an update is coming: right away if the last one was long enough ago, otherwise
+     * once the interval has passed. Events arriving meanwhile join the pending update.
+     */
+    private void scheduleUpdate() {
+        synchronized (this) {
+            if (updateScheduled) {
+                return;
+            }
+            updateScheduled = true;
+        }
+        SwingUtilities.invokeLater(() -> {
+            long wait = lastUpdateAt + updateIntervalMillis - System.currentTimeMillis();
+            if (wait <= 0) {
+                update();
+            } else {
+                updateTimer.setInitialDelay((int) wait);
+                updateTimer.restart();
+            }
+        });
+    }
+
+    /**
+     * Hands the latest state to the panels; runs on the event thread.
+     */
+    private void update() {
+        AlarmStatus newAlarmStatus;
+        Boolean newCatDetected;
+        boolean newSensorsChanged;
+        synchronized (this) {
+            updateScheduled = false;
+            newAlarmStatus = alarmStatus;
+            newCatDetected = catDetected;
+            newSensorsChanged = sensorsChanged;
+            sensorsChanged = false;
+        }
+        lastUpdateAt = System.currentTimeMillis();
+
+        boolean alarmChanged = newAlarmStatus != null && newAlarmStatus != shownAlarmStatus;
+        boolean catChanged = newCatDetected != null && !newCatDetected.equals(shownCatDetected);
+        if (alarmChanged) {
+            shownAlarmStatus = newAlarmStatus;
+        }
+        if (catChanged) {
+            shownCatDetected = newCatDetected;
+        }
+        for (StatusListener uiListener : uiListeners) {
+            if (alarmChanged) {
+                uiListener.notify(newAlarmStatus);
+            }
+            if (catChanged) {
+                uiListener.catDetected(newCatDetected);
+            }
+            if (newSensorsChanged) {
+                uiListener.sensorStatusChanged();
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.udacity.catpoint.core.headless;
+
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorActivation;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Turns one-line text commands into calls on the SecurityService. The command line interface and
+ * the HTTP control endpoint both go through here, so they accept exactly the same commands.
+ * <p>
+ * Sensors are named by id or, if the name is unique, by name. Image classes are only loaded when
+ * an {@code image} command is run.
+ */
+class CommandInterpreter {
+
+    static final String HELP = String.join("\n",
+            "status                         alarm, arming and cat state",
+            "arm home|away                  arm the system",
+            "disarm                         disarm the system",
+            "sensors                        list sensors",
+            "sensor add door|window|motion <name>",
+            "sensor remove <id|name>",
+            "sensor activate <id|name>",
+            "sensor deactivate <id|name>",
+            "image <file>                   classify a picture as the camera frame",
+            "help                           this list");
+
+    private final SecurityService securityService;
+
+    CommandInterpreter(SecurityService securityService) {
+        this.securityService = securityService;
+    }
+
+    /**
+     * Runs a command.
+     *
+     * @return the reply to show the caller
+     * @throws IllegalArgumentException if the command is unknown or its arguments are wrong
+     */
+    String execute(String line) {
+        String[] words = line.trim().split("\\s+", 3);
+        switch (words[0].toLowerCase(Locale.ROOT)) {
+            case "status":
+                return status();
+            case "arm":
+                securityService.setArmingStatus(armingStatus(argument(words, 1, "arm home|away")));
+                return status();
+            case "disarm":
+                securityService.setArmingStatus(ArmingStatus.DISARMED);
+                return status();
+            case "sensors":
+                return sensors();
+            case "sensor":
+                return sensor(words);
+            case "image":
+                return image(line.trim().substring(words[0].length()).trim());
+            case "help":
+                return HELP;
+            default:
+                throw new IllegalArgumentException("Unknown command '" + words[0] + "', try help");
+        }
+    }
+
+    private String status() {
+        return "alarm=" + securityService.getAlarmStatus()
+                + " arming=" + securityService.getArmingStatus()
+                + " cat=" + securityService.getCatDetectedStatus()
+                + " activeSensors=" + securityService.getActiveSensorCount();
+    }
+
+    private String sensors() {
+        if (securityService.getSensors().isEmpty()) {
+            return "no sensors";
+        }
+        return securityService.getSensors().stream()
+                .map(s -> s.getSensorId() + " " + s.getSensorType() + " " + (s.getActive() ? "active" : "inactive")
+                        + " " + s.getName())
+                .collect(Collectors.joining("\n"));
+    }
+
+    private String sensor(String[] words) {
+        String action = argument(words, 1, "sensor add|remove|activate|deactivate ...").toLowerCase(Locale.ROOT);
+        if (action.equals("add")) {
+            String[] typeAndName = argument(words, 2, "sensor add door|window|motion <name>").split("\\s+", 2);
+            if (typeAndName.length < 2) {
+                throw new IllegalArgumentException("Usage: sensor add door|window|motion <name>");
+            }
+            Sensor sensor = new Sensor(typeAndName[1], sensorType(typeAndName[0]));
+            securityService.addSensor(sensor);
+            return "added " + sensor.getSensorId();
+        }
+        Sensor sensor = findSensor(argument(words, 2, "sensor " + action + " <id|name>"));
+        switch (action) {
+            case "remove":
+                securityService.removeSensor(sensor);
+                return "removed " + sensor.getSensorId();
+            case "activate":
+            case "deactivate":
+                securityService.changeSensorActivationStatus(
+                        List.of(new SensorActivation(sensor, action.equals("activate"))));
+                return status();
+            default:
+                throw new IllegalArgumentException("Unknown sensor action '" + action + "'");
+        }
+    }
+
+    private String image(String path) {
+        if (path.isEmpty()) {
+            throw new IllegalArgumentException("Usage: image <file>");
+        }
+        BufferedImage image;
+        try {
+            image = ImageIO.read(new File(path));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to read " + path + ": " + e.getMessage(), e);
+        }
+        if (image == null) {
+            throw new IllegalArgumentException("Not a supported image: " + path);
+        }
+        securityService.processImage(image);
+        return status();
+    }
+
+    private Sensor findSensor(String idOrName) {
+        List<Sensor> matches = securityService.getSensors().stream()
+                .filter(s -> s.getSensorId().toString().equals(idOrName))
+                .collect(Collectors.toList());
+        if (matches.isEmpty()) {
+            matches = securityService.getSensors().stream()
+                    .filter(s -> s.getName().equals(idOrName))
+                    .collect(Collectors.toList());
+        }
+        if (matches.isEmpty()) {
+            throw new IllegalArgumentException("No sensor '" + idOrName + "'");
+        }
+        if (matches.size() > 1) {
+            throw new IllegalArgumentException("Several sensors are named '" + idOrName + "', use the id");
+        }
+        return matches.get(0);
+    }
+
+    private static ArmingStatus armingStatus(String word) {
+        switch (word.toLowerCase(Locale.ROOT)) {
+            case "home":
+                return ArmingStatus.ARMED_HOME;
+            case "away":
+                return ArmingStatus.ARMED_AWAY;
+            default:
+                throw new IllegalArgumentException("Usage: arm home|away");
+        }
+    }
+
+    private static SensorType sensorType(String word) {
+        try {
+            return SensorType.valueOf(word.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown sensor type '" + word + "'");
+        }
+    }
+
+    private static String argument(String[] words, int index, String usage) {
+        if (words.length <= index) {
+            throw new IllegalArgumentException("Usage: " + usage);
+        }
+        return words[index];
+    }
+}
@@ -0,0 +1,132 @@
+package com.udacity.catpoint.core.headless;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.StatusListener;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs the security engine without a window, for unattended machines. Only the repository, the
+ * image service and the SecurityService are started; no Swing or AWT toolkit classes are loaded.
+ * <p>
+ * With {@code --http-port=<port>} the system is controlled over HTTP on the loopback address
+ * (see {@link HttpControl}) until the process is stopped; the token that requests must carry is
+ * printed at startup. Otherwise commands are read from
+ * standard input, one per line, until it ends or {@code quit} is entered. Alarm and cat changes
+ * are printed to standard output either way.
+ */
+public final class HeadlessApp {
+
+    private static final String HTTP_PORT_OPTION = "--http-port=";
+
+    private HeadlessApp() {
+    }
+
+    public static void run(String[] args) throws IOException, InterruptedException {
+        // anything that still reaches for the toolkit fails fast instead of looking for a display
+        System.setProperty("java.awt.headless", "true");
+        Integer httpPort = null;
+        for (String arg : args) {
+            if (arg.startsWith(HTTP_PORT_OPTION)) {
+                try {
+                    httpPort = httpPort(arg.substring(HTTP_PORT_OPTION.length()));
+                } catch (IllegalArgumentException e) {
+                    System.err.println(e.getMessage());
+                    System.exit(2);
+                }
+            }
+        }
+
+        PretendDatabaseSecurityRepositoryImpl securityRepository = new PretendDatabaseSecurityRepositoryImpl();
+        ImageService imageService = new FakeImageService();
+        SecurityService securityService = new SecurityService(securityRepository, imageService);
+        securityService.addStatusListener(new EventPrinter());
+        CommandInterpreter interpreter = new CommandInterpreter(securityService);
+
+        if (httpPort != null) {
+            HttpControl httpControl = new HttpControl(interpreter, httpPort);
+            CountDownLatch stopped = new CountDownLatch(1);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                httpControl.close();
+                securityRepository.close();
+                stopped.countDown();
+            }, "headless-shutdown"));
+            System.out.println("Listening on http://localhost:" + httpControl.getPort());
+            System.out.println("Send 'Authorization: Bearer " + httpControl.getToken() + "' with every request");
+            stopped.await();
+        } else {
+            try {
+                readCommands(interpreter);
+            } finally {
+                securityRepository.close();
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException with a message for the user if the value is not a port
+     */
+    static int httpPort(String value) {
+        int port;
+        try {
+            port = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            port = -1;
+        }
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("Invalid " + HTTP_PORT_OPTION + value
+                    + ", expected a port number from 0 to 65535 (0 picks a free port)");
+        }
+        return port;
+    }
+
+    private static void readCommands(CommandInterpreter interpreter) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        System.out.println("Catpoint running headless, type help for commands or quit to stop");
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.equals("quit")) {
+                return;
+            }
+            try {
+                System.out.println(interpreter.execute(line));
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+            } catch (RuntimeException e) {
+                System.out.println("Command failed: " + e);
+            }
+        }
+    }
+
+    /**
+     * Reports state changes, which may come from sensors or camera frames as well as commands.
+     */
+    private static final class EventPrinter implements StatusListener {
+        @Override
+        public void notify(AlarmStatus status) {
+            System.out.println("event: alarm " + status);
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+            System.out.println("event: cat " + (catDetected ? "detected" : "gone"));
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+            //no behavior necessary
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.udacity.catpoint.core.headless;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Control endpoint for the headless runtime. It only listens on the loopback address, so only
+ * processes on the same machine can reach it.
+ * <pre>
+ *     GET  /status    the same as the status command
+ *     POST /command   runs the command in the request body, e.g. "arm away"
+ * </pre>
+ * Every request must carry {@code Authorization: Bearer <token>} with the token made for this run.
+ * A web page the user has open cannot send that header to another origin without a preflight,
+ * which is never answered, so it cannot arm or disarm the system by posting a form. Requests
+ * from a browser, which carry an {@code Origin} header, and requests for any host but the
+ * loopback address, as sent after DNS rebinding, are refused as well.
+ * <p>
+ * Replies are plain text; a rejected command gets a 400 with the reason and a command that
+ * fails while running gets a 500. A refused request gets a 401 or 403 and is never run.
+ */
+class HttpControl implements AutoCloseable {
+
+    private static final Set<String> LOOPBACK_HOSTS = Set.of("localhost", "127.0.0.1", "[::1]");
+
+    private final HttpServer server;
+    private final String token;
+    private final ExecutorService handlers = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "http-control");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param port the port to listen on, or 0 for any free port
+     */
+    HttpControl(CommandInterpreter interpreter, int port) throws IOException {
+        this(interpreter, port, newToken());
+    }
+
+    HttpControl(CommandInterpreter interpreter, int port, String token) throws IOException {
+        this.token = token;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/status", exchange -> {
+            if (!allowed(exchange)) {
+                return;
+            }
+            if (!exchange.getRequestMethod().equals("GET")) {
+                reply(exchange, 405, "Use GET");
+                return;
+            }
+            run(exchange, interpreter, "status");
+        });
+        server.createContext("/command", exchange -> {
+            if (!allowed(exchange)) {
+                return;
+            }
+            if (!exchange.getRequestMethod().equals("POST")) {
+                reply(exchange, 405, "Use POST");
+                return;
+            }
+            run(exchange, interpreter, new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        });
+        // commands are handled one at a time, the same as on the command line
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[24];
+        new SecureRandom().nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return the secret that requests must present, printed at startup for the operator
+     */
+    String getToken() {
+        return token;
+    }
+
+    /**
+     * Replies with an error, without reading the request, unless it may run a command.
+     */
+    private boolean allowed(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestHeaders().containsKey("Origin")) {
+            reply(exchange, 403, "Requests from web pages are not accepted");
+            return false;
+        }
+        if (!loopbackHost(exchange.getRequestHeaders().getFirst("Host"))) {
+            reply(exchange, 403, "Use localhost as the host");
+            return false;
+        }
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        byte[] expected = ("Bearer " + token).getBytes(StandardCharsets.UTF_8);
+        if (authorization == null
+                || !MessageDigest.isEqual(expected, authorization.trim().getBytes(StandardCharsets.UTF_8))) {
+            exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+            reply(exchange, 401, "Send the token printed at startup as 'Authorization: Bearer <token>'");
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean loopbackHost(String host) {
+        if (host == null) {
+            return false;
+        }
+        host = host.trim().toLowerCase(Locale.ROOT);
+        int portStart = host.lastIndexOf(':');
+        if (portStart > host.lastIndexOf(']')) {
+            host = host.substring(0, portStart);
+        }
+        return LOOPBACK_HOSTS.contains(host);
+    }
+
+    private static void run(HttpExchange exchange, CommandInterpreter interpreter, String command) throws IOException {
+        try {
+            reply(exchange, 200, interpreter.execute(command));
+        } catch (IllegalArgumentException e) {
+            reply(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            reply(exchange, 500, "Command failed: " + e);
+        }
+    }
+
+    private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = (body + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdown();
+    }
+}
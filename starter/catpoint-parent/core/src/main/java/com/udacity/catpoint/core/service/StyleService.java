@@ -1,5 +1,8 @@
 package com.udacity.catpoint.core.service;
 
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+
 import java.awt.*;
 
 /**
@@ -9,4 +12,12 @@ public class StyleService {
 
     public static final Font HEADING_FONT = new Font("Sans Serif", Font.BOLD, 24);
 
+    public static Color colorOf(AlarmStatus status) {
+        return new Color(status.getRgb());
+    }
+
+    public static Color colorOf(ArmingStatus status) {
+        return new Color(status.getRgb());
+    }
+
 }
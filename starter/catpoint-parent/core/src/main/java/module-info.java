@@ -1,6 +1,8 @@
 module com.udacity.catpoint.core {
     requires java.desktop;
+    requires jdk.httpserver;
     requires com.google.common;
+    requires org.slf4j;
     requires miglayout.swing;
     requires com.udacity.catpoint.securityservice;
     requires imageservice;
@@ -0,0 +1,155 @@
+package com.udacity.catpoint.core.application;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorRegistry;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Replays random sensor changes against the table model, checking after every step that it shows
+ * exactly the filtered snapshot, and that a table following only the fired events shows the same.
+ */
+public class SensorTableModelTest {
+
+    private static final SensorType[] TYPES = SensorType.values();
+
+    private final SensorRegistry registry = new SensorRegistry();
+    private final SensorTableModel model = new SensorTableModel();
+    // what a table that only learns about changes through the events would show
+    private final List<String> mirror = new ArrayList<>();
+    private SensorType typeFilter;
+    private Boolean activeFilter;
+
+    @Test
+    public void randomChanges_keepRowsAndEventsInStepWithSnapshot() {
+        model.addTableModelListener(this::follow);
+        Random random = new Random(42);
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            sensors.add(add(random, i));
+        }
+        model.update(registry.getSnapshot());
+        check("initial load");
+
+        for (int step = 0; step < 3_000; step++) {
+            String action;
+            int choice = random.nextInt(100);
+            if (choice < 40 && !sensors.isEmpty()) {
+                Sensor sensor = sensors.get(random.nextInt(sensors.size()));
+                sensor.setActive(!sensor.getActive());
+                registry.put(sensor);
+                action = "toggle " + sensor.getName();
+            } else if (choice < 50) {
+                // a batch that is sometimes too large for row events
+                int count = random.nextInt(sensors.size() + 1);
+                for (int i = 0; i < count; i++) {
+                    Sensor sensor = sensors.get(random.nextInt(sensors.size()));
+                    sensor.setActive(!sensor.getActive());
+                    registry.put(sensor);
+                }
+                action = "toggle " + count + " sensors";
+            } else if (choice < 65 || sensors.isEmpty()) {
+                Sensor sensor = add(random, step);
+                sensors.add(sensor);
+                action = "add " + sensor.getName();
+            } else if (choice < 78) {
+                Sensor sensor = sensors.remove(random.nextInt(sensors.size()));
+                registry.remove(sensor);
+                action = "remove " + sensor.getName();
+            } else if (choice < 90) {
+                Sensor sensor = sensors.get(random.nextInt(sensors.size()));
+                sensor.setName(name(random, step));
+                registry.put(sensor);
+                action = "rename to " + sensor.getName();
+            } else {
+                typeFilter = random.nextBoolean() ? null : TYPES[random.nextInt(TYPES.length)];
+                int state = random.nextInt(3);
+                activeFilter = state == 0 ? null : state == 1;
+                model.setFilter(typeFilter, activeFilter);
+                action = "filter " + typeFilter + "/" + activeFilter;
+            }
+            model.update(registry.getSnapshot());
+            check("step " + step + ": " + action);
+        }
+    }
+
+    private Sensor add(Random random, int step) {
+        Sensor sensor = new Sensor(name(random, step), TYPES[random.nextInt(TYPES.length)], random.nextBoolean());
+        registry.put(sensor);
+        return sensor;
+    }
+
+    private static String name(Random random, int step) {
+        return "Sensor " + random.nextInt(1_000) + "-" + step;
+    }
+
+    private void check(String step) {
+        List<String> expected = new ArrayList<>();
+        for (Sensor sensor : registry.getSnapshot().getSensors()) {
+            boolean active = sensor.getActive();
+            if ((typeFilter == null || sensor.getSensorType() == typeFilter)
+                    && (activeFilter == null || activeFilter == active)) {
+                expected.add(describe(sensor.getName(), sensor.getSensorType(), active ? "Active" : "Inactive"));
+            }
+        }
+        assertEquals(expected, shownRows(), "model rows after " + step);
+        assertEquals(expected, mirror, "rows followed through events after " + step);
+    }
+
+    private List<String> shownRows() {
+        List<String> shown = new ArrayList<>();
+        for (int row = 0; row < model.getRowCount(); row++) {
+            shown.add(describe(row));
+        }
+        return shown;
+    }
+
+    /**
+     * Applies one event to the mirror the way a table would, reading only the rows it names.
+     */
+    private void follow(TableModelEvent event) {
+        int first = event.getFirstRow();
+        int last = event.getLastRow();
+        if (first == TableModelEvent.HEADER_ROW || last == Integer.MAX_VALUE) {
+            mirror.clear();
+            mirror.addAll(shownRows());
+            return;
+        }
+        assertTrue(first >= 0 && first <= last, "event rows " + first + ".." + last);
+        switch (event.getType()) {
+            case TableModelEvent.INSERT:
+                for (int row = first; row <= last; row++) {
+                    mirror.add(row, describe(row));
+                }
+                break;
+            case TableModelEvent.DELETE:
+                assertTrue(last < mirror.size(), "deleted rows " + first + ".." + last + " of " + mirror.size());
+                mirror.subList(first, last + 1).clear();
+                break;
+            default:
+                assertTrue(last < mirror.size(), "updated rows " + first + ".." + last + " of " + mirror.size());
+                for (int row = first; row <= last; row++) {
+                    mirror.set(row, describe(row));
+                }
+                break;
+        }
+        assertEquals(model.getRowCount(), mirror.size(), "row count after event " + first + ".." + last);
+    }
+
+    private String describe(int row) {
+        return describe(model.getValueAt(row, SensorTableModel.NAME_COLUMN),
+                model.getValueAt(row, SensorTableModel.TYPE_COLUMN),
+                model.getValueAt(row, SensorTableModel.STATE_COLUMN));
+    }
+
+    private static String describe(Object name, Object type, Object state) {
+        return name + "|" + type + "|" + state;
+    }
+}
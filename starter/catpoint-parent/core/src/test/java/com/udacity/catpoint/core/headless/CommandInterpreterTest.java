@@ -0,0 +1,101 @@
+package com.udacity.catpoint.core.headless;
+
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.FakeSecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the text commands shared by the command line and the HTTP control endpoint.
+ */
+public class CommandInterpreterTest {
+
+    private final FakeSecurityRepository repository = new FakeSecurityRepository();
+    private final SecurityService securityService = new SecurityService(repository, (image, threshold) -> false);
+    private final CommandInterpreter interpreter = new CommandInterpreter(securityService);
+
+    private Sensor sensorNamed(String name) {
+        return securityService.getSensors().stream()
+                .filter(s -> s.getName().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    public void status_reportsAlarmArmingAndCat() {
+        assertEquals("alarm=NO_ALARM arming=DISARMED cat=false activeSensors=1", interpreter.execute("status"));
+    }
+
+    @Test
+    public void armAndDisarm_changeArmingStatus_ignoringCaseAndSpaces() {
+        interpreter.execute("  ARM   away ");
+        assertEquals(ArmingStatus.ARMED_AWAY, securityService.getArmingStatus());
+
+        interpreter.execute("arm home");
+        assertEquals(ArmingStatus.ARMED_HOME, securityService.getArmingStatus());
+
+        interpreter.execute("disarm");
+        assertEquals(ArmingStatus.DISARMED, securityService.getArmingStatus());
+    }
+
+    @Test
+    public void sensorAdd_keepsSpacesInName_andReturnsId() {
+        String reply = interpreter.execute("sensor add window Back door window");
+
+        Sensor added = sensorNamed("Back door window");
+        assertEquals(SensorType.WINDOW, added.getSensorType());
+        assertEquals("added " + added.getSensorId(), reply);
+        assertTrue(interpreter.execute("sensors").contains(added.getSensorId() + " WINDOW inactive Back door window"));
+    }
+
+    @Test
+    public void sensorActivateAndRemove_findSensorByNameOrId() {
+        Sensor door = sensorNamed("Door Sensor");
+
+        interpreter.execute("sensor activate Door Sensor");
+        assertTrue(door.getActive());
+        assertEquals(2, securityService.getActiveSensorCount());
+
+        interpreter.execute("sensor deactivate " + door.getSensorId());
+        assertFalse(door.getActive());
+
+        assertEquals("removed " + door.getSensorId(), interpreter.execute("sensor remove " + door.getSensorId()));
+        assertFalse(securityService.getSensors().contains(door));
+    }
+
+    @Test
+    public void ambiguousName_mustBeGivenById() {
+        interpreter.execute("sensor add motion Hall");
+        interpreter.execute("sensor add door Hall");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> interpreter.execute("sensor remove Hall"));
+        assertEquals("Several sensors are named 'Hall', use the id", e.getMessage());
+    }
+
+    @Test
+    public void badCommands_areRejectedWithUsage() {
+        assertEquals("Unknown command 'launch', try help",
+                assertThrows(IllegalArgumentException.class, () -> interpreter.execute("launch")).getMessage());
+        assertEquals("Usage: arm home|away",
+                assertThrows(IllegalArgumentException.class, () -> interpreter.execute("arm")).getMessage());
+        assertEquals("Usage: arm home|away",
+                assertThrows(IllegalArgumentException.class, () -> interpreter.execute("arm sideways")).getMessage());
+        assertEquals("Unknown sensor type 'roof'",
+                assertThrows(IllegalArgumentException.class, () -> interpreter.execute("sensor add roof Attic")).getMessage());
+        assertEquals("Usage: sensor add door|window|motion <name>",
+                assertThrows(IllegalArgumentException.class, () -> interpreter.execute("sensor add door")).getMessage());
+        assertEquals("No sensor '" + new UUID(0, 0) + "'",
+                assertThrows(IllegalArgumentException.class,
+                        () -> interpreter.execute("sensor remove " + new UUID(0, 0))).getMessage());
+        assertEquals("Usage: image <file>",
+                assertThrows(IllegalArgumentException.class, () -> interpreter.execute("image")).getMessage());
+        assertEquals(2, securityService.getSensors().size());
+    }
+}
@@ -0,0 +1,122 @@
+package com.udacity.catpoint.core.headless;
+
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.FakeSecurityRepository;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that the HTTP control endpoint only runs commands for callers holding the run's token,
+ * and never for web pages.
+ */
+public class HttpControlTest {
+
+    private static final String TOKEN = "test-token";
+
+    private final SecurityService securityService = new SecurityService(new FakeSecurityRepository(), (image, threshold) -> false);
+    private HttpControl httpControl;
+
+    @BeforeEach
+    void start() throws IOException {
+        httpControl = new HttpControl(new CommandInterpreter(securityService), 0, TOKEN);
+    }
+
+    @AfterEach
+    void stop() {
+        httpControl.close();
+    }
+
+    /**
+     * Sends a request with the given headers and returns the reply, status line included. A raw
+     * socket is used so the Host and Origin headers can be set freely.
+     */
+    private String send(String method, String path, String headers, String body) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), httpControl.getPort())) {
+            byte[] content = body.getBytes(StandardCharsets.UTF_8);
+            String request = method + " " + path + " HTTP/1.1\r\n" + headers
+                    + "Content-Type: text/plain\r\nContent-Length: " + content.length + "\r\nConnection: close\r\n\r\n";
+            OutputStream out = socket.getOutputStream();
+            out.write(request.getBytes(StandardCharsets.US_ASCII));
+            out.write(content);
+            out.flush();
+            InputStream in = socket.getInputStream();
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String host(int port) {
+        return "Host: localhost:" + port + "\r\n";
+    }
+
+    private static String bearer(String token) {
+        return "Authorization: Bearer " + token + "\r\n";
+    }
+
+    @Test
+    public void commandWithToken_isRun() throws IOException {
+        String reply = send("POST", "/command", host(httpControl.getPort()) + bearer(TOKEN), "arm away");
+
+        assertTrue(reply.startsWith("HTTP/1.1 200"), reply);
+        assertEquals(ArmingStatus.ARMED_AWAY, securityService.getArmingStatus());
+        assertTrue(send("GET", "/status", host(httpControl.getPort()) + bearer(TOKEN), "")
+                .contains("arming=ARMED_AWAY"));
+    }
+
+    @Test
+    public void commandWithoutRightToken_isRefused() throws IOException {
+        assertTrue(send("POST", "/command", host(httpControl.getPort()), "arm away").startsWith("HTTP/1.1 401"));
+        assertTrue(send("POST", "/command", host(httpControl.getPort()) + bearer("guess"), "arm away")
+                .startsWith("HTTP/1.1 401"));
+        assertTrue(send("GET", "/status", host(httpControl.getPort()), "").startsWith("HTTP/1.1 401"));
+        assertEquals(ArmingStatus.DISARMED, securityService.getArmingStatus());
+    }
+
+    @Test
+    public void requestFromWebPage_isRefused_evenWithToken() throws IOException {
+        String reply = send("POST", "/command",
+                host(httpControl.getPort()) + bearer(TOKEN) + "Origin: http://example.com\r\n", "disarm");
+
+        assertTrue(reply.startsWith("HTTP/1.1 403"), reply);
+    }
+
+    @Test
+    public void requestForOtherHost_isRefused() throws IOException {
+        // what a browser sends after a hostile name has been rebound to the loopback address
+        String reply = send("POST", "/command", "Host: attacker.example:" + httpControl.getPort() + "\r\n" + bearer(TOKEN),
+                "arm away");
+
+        assertTrue(reply.startsWith("HTTP/1.1 403"), reply);
+        assertEquals(ArmingStatus.DISARMED, securityService.getArmingStatus());
+        assertTrue(send("GET", "/status", "Host: 127.0.0.1\r\n" + bearer(TOKEN), "").startsWith("HTTP/1.1 200"));
+        assertTrue(send("GET", "/status", "Host: [::1]:" + httpControl.getPort() + "\r\n" + bearer(TOKEN), "")
+                .startsWith("HTTP/1.1 200"));
+    }
+
+    @Test
+    public void generatedTokens_differPerRun() throws IOException {
+        try (HttpControl first = new HttpControl(new CommandInterpreter(securityService), 0);
+             HttpControl second = new HttpControl(new CommandInterpreter(securityService), 0)) {
+            assertTrue(first.getToken().length() >= 32);
+            assertNotEquals(first.getToken(), second.getToken());
+        }
+    }
+
+    @Test
+    public void badPortOption_isReportedInPlainWords() {
+        assertEquals(8080, HeadlessApp.httpPort("8080"));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> HeadlessApp.httpPort("80a"));
+        assertEquals("Invalid --http-port=80a, expected a port number from 0 to 65535 (0 picks a free port)", e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> HeadlessApp.httpPort("70000"));
+    }
+}
@@ -6,18 +6,21 @@ import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.rekognition.RekognitionClientBuilder;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
 import software.amazon.awssdk.services.rekognition.model.Image;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
 import java.util.Properties;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -32,32 +35,125 @@ import java.util.stream.Collectors;
  *      aws.id=[your access key id]
  *      aws.secret=[your Secret access key]
  *      aws.region=[an aws region of choice. For example: us-east-2]
+ * Optional keys tune the upload:
+ *      aws.image.maxDimension=[longest side in pixels the image is scaled down to, default 1024]
+ *      aws.image.jpegQuality=[JPEG quality from 0 to 1, default 0.85]
+ * and bound how long a call may take, or point the client at another endpoint such as a local stub:
+ *      aws.timeout.callMillis=[deadline for a call including SDK retries, default 10000]
+ *      aws.timeout.attemptMillis=[deadline for each HTTP attempt, default 3000]
+ *      aws.endpoint=[endpoint URI to use instead of the region's Rekognition endpoint]
+ * An optional key with a value that is not a number, or out of range, is logged and its default
+ * used instead. Without a usable configuration every scan fails with an IllegalStateException,
+ * which lets a {@link ResilientImageService} answer from its fallback instead.
  */
 public class AwsImageService implements ImageService {
 
     private Logger log = LoggerFactory.getLogger(AwsImageService.class);
 
-    //aws recommendation is to maintain only a single instance of client objects
-    private static RekognitionClient rekognitionClient;
+    //aws recommendation is to maintain only a single instance of client objects, so every scan
+    // through this service shares one; null if the service could not be configured
+    private final RekognitionClient rekognitionClient;
+
+    private static final int DEFAULT_MAX_DIMENSION = 1024;
+    private static final float DEFAULT_JPEG_QUALITY = 0.85f;
+    private static final long DEFAULT_CALL_TIMEOUT_MILLIS = 10_000;
+    private static final long DEFAULT_ATTEMPT_TIMEOUT_MILLIS = 3_000;
+
+    private final JpegEncoder jpegEncoder;
 
     public AwsImageService() {
+        this(loadConfig());
+    }
+
+    /**
+     * @param props the same keys config.properties holds
+     */
+    public AwsImageService(Properties props) {
+        int maxDimension = numberProperty(props, "aws.image.maxDimension", DEFAULT_MAX_DIMENSION, Integer::valueOf);
+        float jpegQuality = numberProperty(props, "aws.image.jpegQuality", DEFAULT_JPEG_QUALITY, Float::valueOf);
+        JpegEncoder encoder;
+        try {
+            encoder = newJpegEncoder(maxDimension, jpegQuality);
+        } catch (IllegalArgumentException e) {
+            log.error("Ignoring aws.image settings, {}; using the defaults", e.getMessage());
+            encoder = newJpegEncoder(DEFAULT_MAX_DIMENSION, DEFAULT_JPEG_QUALITY);
+        }
+        jpegEncoder = encoder;
+        rekognitionClient = buildClient(props);
+    }
+
+    /**
+     * @return the value of an optional numeric key, or the default if it is missing or not a number
+     */
+    private <T extends Number> T numberProperty(Properties props, String key, T defaultValue, Function<String, T> parser) {
+        String value = props.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return parser.apply(value.trim());
+        } catch (NumberFormatException e) {
+            log.error("Ignoring {}={}, which is not a number; using {}", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private Duration timeoutProperty(Properties props, String key, long defaultMillis) {
+        long millis = numberProperty(props, key, defaultMillis, Long::valueOf);
+        if (millis <= 0) {
+            log.error("Ignoring {}={}, which must be positive; using {}", key, millis, defaultMillis);
+            millis = defaultMillis;
+        }
+        return Duration.ofMillis(millis);
+    }
+
+    private static Properties loadConfig() {
         Properties props = new Properties();
-        try (InputStream is = getClass().getClassLoader().getResourceAsStream("config.properties")) {
-            props.load(is);
-        } catch (IOException ioe ) {
-            log.error("Unable to initialize AWS Rekognition, no properties file found", ioe);
-            return;
+        try (InputStream is = AwsImageService.class.getClassLoader().getResourceAsStream("config.properties")) {
+            if (is != null) {
+                props.load(is);
+            }
+        } catch (IOException ioe) {
+            LoggerFactory.getLogger(AwsImageService.class).error("Unable to read config.properties", ioe);
         }
+        return props;
+    }
 
+    private RekognitionClient buildClient(Properties props) {
         String awsId = props.getProperty("aws.id");
         String awsSecret = props.getProperty("aws.secret");
         String awsRegion = props.getProperty("aws.region");
+        if (awsId == null || awsSecret == null || awsRegion == null) {
+            log.error("Unable to initialize AWS Rekognition, aws.id, aws.secret and aws.region must be set in config.properties");
+            return null;
+        }
 
         AwsCredentials awsCredentials = AwsBasicCredentials.create(awsId, awsSecret);
-        rekognitionClient = RekognitionClient.builder()
+        RekognitionClientBuilder builder = RekognitionClient.builder()
                 .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
                 .region(Region.of(awsRegion))
-                .build();
+                .overrideConfiguration(ClientOverrideConfiguration.builder()
+                        .apiCallTimeout(timeoutProperty(props, "aws.timeout.callMillis", DEFAULT_CALL_TIMEOUT_MILLIS))
+                        .apiCallAttemptTimeout(timeoutProperty(props, "aws.timeout.attemptMillis", DEFAULT_ATTEMPT_TIMEOUT_MILLIS))
+                        .build());
+        String endpoint = props.getProperty("aws.endpoint");
+        if (endpoint != null) {
+            try {
+                builder.endpointOverride(URI.create(endpoint));
+            } catch (IllegalArgumentException e) {
+                // falling back to the real endpoint could send frames somewhere unintended
+                log.error("Unable to initialize AWS Rekognition, aws.endpoint={} is not a valid URI", endpoint);
+                return null;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return false if the service has no usable configuration and every scan will fail
+     */
+    public boolean isConfigured() {
+        return rekognitionClient != null;
     }
 
     /**
@@ -68,10 +164,13 @@ public class AwsImageService implements ImageService {
      */
     @Override
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if (rekognitionClient == null) {
+            throw new IllegalStateException("AWS Rekognition is not configured, see config.properties");
+        }
         Image awsImage = null;
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "jpg", os);
-            awsImage = Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
+        try {
+            // the encoder hands over a fresh array nobody else holds, so it can be wrapped without a copy
+            awsImage = Image.builder().bytes(SdkBytes.fromByteArrayUnsafe(jpegEncoder.encode(image))).build();
         } catch (IOException ioe) {
             log.error("Error building image byte array", ioe);
             return false;
@@ -82,6 +181,10 @@ public class AwsImageService implements ImageService {
         return response.labels().stream().filter(l -> l.name().toLowerCase().contains("cat")).findFirst().isPresent();
     }
 
+    private static JpegEncoder newJpegEncoder(int maxDimension, float quality) {
+        return new JpegEncoder(maxDimension, quality, Runtime.getRuntime().availableProcessors());
+    }
+
     private void logLabelsForFun(DetectLabelsResponse response) {
         log.info(response.labels().stream()
                 .map(label -> String.format("%s(%.1f%%)", label.name(), label.confidence()))
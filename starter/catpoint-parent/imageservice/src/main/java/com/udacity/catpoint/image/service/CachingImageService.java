@@ -0,0 +1,258 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * ImageService decorator that remembers recent verdicts by the {@link DifferenceHash} of the image
+ * and the confidence threshold. A frame whose hash is within {@code maxDistance} bits of a
+ * remembered one, checked at the same threshold, gets the remembered verdict instead of a call
+ * to the wrapped service.
+ * <p>
+ * At most {@code maxEntries} verdicts are kept, dropping the least recently used first, and a
+ * verdict is forgotten once it is older than {@code timeToLive} so a scene that really changed
+ * is eventually looked at again. Hit, miss and eviction counts are kept for tuning.
+ * <p>
+ * Near matches are found through an index rather than by comparing against every entry. The
+ * hash is split into {@code maxDistance + 1} bands; two hashes that differ in at most
+ * {@code maxDistance} bits must agree on at least one whole band, so only entries sharing a band
+ * with the frame are compared.
+ */
+public class CachingImageService implements ImageService {
+
+    private static final class Key {
+        private final long hash;
+        private final float confidenceThreshold;
+
+        private Key(long hash, float confidenceThreshold) {
+            this.hash = hash;
+            this.confidenceThreshold = confidenceThreshold;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return hash == key.hash && Float.compare(confidenceThreshold, key.confidenceThreshold) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(hash) + Float.hashCode(confidenceThreshold);
+        }
+    }
+
+    private static final class Verdict {
+        private final boolean cat;
+        private final long storedAt;
+
+        private Verdict(boolean cat, long storedAt) {
+            this.cat = cat;
+            this.storedAt = storedAt;
+        }
+    }
+
+    private final ImageService delegate;
+    private final int maxEntries;
+    private final long timeToLiveNanos;
+    private final int maxDistance;
+    private final LongSupplier nanoClock;
+
+    // access-ordered, so iteration starts at the least recently used entry; guarded by itself
+    private final LinkedHashMap<Key, Verdict> verdicts = new LinkedHashMap<>(16, 0.75f, true);
+    // for each band, the remembered keys by the bits they have in that band; guarded by verdicts
+    private final long[] bandMasks;
+    private final List<Map<Long, Set<Key>>> bands;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxEntries  how many verdicts to remember
+     * @param timeToLive  how long a verdict stays usable
+     * @param maxDistance how many hash bits may differ for a frame to count as the same scene,
+     *                    below 64; 0 only reuses verdicts for frames with an identical hash
+     */
+    public CachingImageService(ImageService delegate, int maxEntries, Duration timeToLive, int maxDistance) {
+        this(delegate, maxEntries, timeToLive, maxDistance, System::nanoTime);
+    }
+
+    CachingImageService(ImageService delegate, int maxEntries, Duration timeToLive, int maxDistance, LongSupplier nanoClock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache must hold at least one entry");
+        }
+        if (maxDistance < 0 || maxDistance > 63) {
+            throw new IllegalArgumentException("Hamming distance must be between 0 and 63");
+        }
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.maxDistance = maxDistance;
+        this.nanoClock = nanoClock;
+        int bandCount = maxDistance + 1;
+        bandMasks = new long[bandCount];
+        bands = new ArrayList<>(bandCount);
+        for (int band = 0; band < bandCount; band++) {
+            int from = band * 64 / bandCount;
+            int to = (band + 1) * 64 / bandCount;
+            bandMasks[band] = (to == 64 ? -1L : (1L << to) - 1) & -(1L << from);
+            bands.add(new HashMap<>());
+        }
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if (image == null) {
+            return delegate.imageContainsCat(image, confidenceThreshhold);
+        }
+        long hash = DifferenceHash.of(image);
+        Boolean cached = lookup(hash, confidenceThreshhold);
+        if (cached != null) {
+            return cached;
+        }
+        boolean cat = delegate.imageContainsCat(image, confidenceThreshhold);
+        store(hash, confidenceThreshhold, cat);
+        return cat;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold, Executor executor) {
+        if (image == null) {
+            return delegate.imageContainsCatAsync(image, confidenceThreshhold, executor);
+        }
+        long hash = DifferenceHash.of(image);
+        Boolean cached = lookup(hash, confidenceThreshhold);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<Boolean> analysis = delegate.imageContainsCatAsync(image, confidenceThreshhold, executor);
+        analysis.thenAccept(cat -> store(hash, confidenceThreshhold, cat));
+        return analysis;
+    }
+
+    /**
+     * @return the remembered verdict for a frame with this hash, or null on a miss
+     */
+    private Boolean lookup(long hash, float confidenceThreshold) {
+        long now = nanoClock.getAsLong();
+        synchronized (verdicts) {
+            Key exact = new Key(hash, confidenceThreshold);
+            Verdict verdict = verdicts.get(exact);
+            if (verdict == null && maxDistance > 0) {
+                Key nearest = findNearest(exact, now);
+                if (nearest != null) {
+                    verdict = verdicts.get(nearest); // marks it as recently used
+                }
+            }
+            if (verdict != null && !isExpired(verdict, now)) {
+                hits.incrementAndGet();
+                return verdict.cat;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * @return the unexpired key closest to the frame's, checked at the same threshold and within
+     * {@code maxDistance} bits, or null if there is none
+     */
+    private Key findNearest(Key frame, long now) {
+        Key nearest = null;
+        int nearestDistance = maxDistance + 1;
+        for (int band = 0; band < bandMasks.length; band++) {
+            Set<Key> candidates = bands.get(band).get(frame.hash & bandMasks[band]);
+            if (candidates == null) {
+                continue;
+            }
+            for (Key key : candidates) {
+                int distance = DifferenceHash.distance(key.hash, frame.hash);
+                if (distance < nearestDistance
+                        && Float.compare(key.confidenceThreshold, frame.confidenceThreshold) == 0
+                        && !isExpired(verdicts.get(key), now)) {
+                    nearest = key;
+                    nearestDistance = distance;
+                }
+            }
+        }
+        return nearest;
+    }
+
+    private void store(long hash, float confidenceThreshold, boolean cat) {
+        long now = nanoClock.getAsLong();
+        synchronized (verdicts) {
+            Key key = new Key(hash, confidenceThreshold);
+            if (verdicts.put(key, new Verdict(cat, now)) == null) {
+                for (int band = 0; band < bandMasks.length; band++) {
+                    bands.get(band).computeIfAbsent(hash & bandMasks[band], bits -> new HashSet<>()).add(key);
+                }
+            }
+            Iterator<Map.Entry<Key, Verdict>> oldestFirst = verdicts.entrySet().iterator();
+            while (oldestFirst.hasNext()) {
+                Map.Entry<Key, Verdict> entry = oldestFirst.next();
+                if (verdicts.size() > maxEntries || isExpired(entry.getValue(), now)) {
+                    oldestFirst.remove();
+                    unindex(entry.getKey());
+                    evictions.incrementAndGet();
+                } else {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void unindex(Key key) {
+        for (int band = 0; band < bandMasks.length; band++) {
+            long bits = key.hash & bandMasks[band];
+            Set<Key> keys = bands.get(band).get(bits);
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                bands.get(band).remove(bits);
+            }
+        }
+    }
+
+    private boolean isExpired(Verdict verdict, long now) {
+        return now - verdict.storedAt > timeToLiveNanos;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the share of lookups answered from the cache, or 0 before the first lookup
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    public int size() {
+        synchronized (verdicts) {
+            return verdicts.size();
+        }
+    }
+}
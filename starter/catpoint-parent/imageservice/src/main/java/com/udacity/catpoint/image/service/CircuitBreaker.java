@@ -0,0 +1,94 @@
+package com.udacity.catpoint.image.service;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts consecutive failures of a remote service and stops calling it for a while once too many
+ * pile up, instead of making every caller wait for a service that is down.
+ * <p>
+ * Closed, every call is allowed. After {@code failureThreshold} failures in a row it opens and
+ * refuses calls for {@code openDuration}. It then lets a single trial call through, half open;
+ * success closes it again, failure opens it for another {@code openDuration}.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+
+    // guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier nanoClock) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * @return true if a call may go ahead, in which case its outcome must be reported with
+     * {@link #recordSuccess()} or {@link #recordFailure()}
+     */
+    public synchronized boolean tryAcquire() {
+        switch (currentState()) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = nanoClock.getAsLong();
+        }
+        trialInFlight = false;
+    }
+
+    /**
+     * Reports that an allowed call ended without telling anything about the service, for example
+     * because the caller cancelled it.
+     */
+    public synchronized void release() {
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return currentState();
+    }
+
+    private State currentState() {
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+        }
+        return state;
+    }
+}
@@ -0,0 +1,93 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * ImageService that stands in for one still being created, so slow set-up such as building an
+ * AwsImageService client can run in the background while the rest of the application starts.
+ * A scan requested before the real service is ready waits for it; an asynchronous scan is chained
+ * onto it without holding a thread. If the service could not be created, every scan fails with
+ * that cause.
+ */
+public class DeferredImageService implements ImageService {
+
+    private final CompletableFuture<? extends ImageService> delegate;
+
+    /**
+     * @param delegate completes with the service to use once it has been created
+     */
+    public DeferredImageService(CompletableFuture<? extends ImageService> delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return true once the real service has been created and scans no longer wait for it
+     */
+    public boolean isReady() {
+        return delegate.isDone() && !delegate.isCompletedExceptionally();
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return awaitDelegate().imageContainsCat(image, confidenceThreshhold);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold, Executor executor) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        delegate.whenComplete((service, failure) -> {
+            if (failure != null) {
+                result.completeExceptionally(failure);
+                return;
+            }
+            if (result.isDone()) {
+                return; // cancelled or timed out while the service was being created
+            }
+            CompletableFuture<Boolean> scan;
+            try {
+                scan = service.imageContainsCatAsync(image, confidenceThreshhold, executor);
+            } catch (RuntimeException e) {
+                // thrown here it would only reach this callback's own future, leaving the caller waiting
+                result.completeExceptionally(e);
+                return;
+            }
+            scan.whenComplete((cat, scanFailure) -> {
+                if (scanFailure != null) {
+                    result.completeExceptionally(scanFailure);
+                } else {
+                    result.complete(cat);
+                }
+            });
+            // a caller that cancels or times out stops the scan, as the interface promises
+            result.whenComplete((cat, resultFailure) -> {
+                if (resultFailure != null) {
+                    scan.cancel(true);
+                }
+            });
+        });
+        return result;
+    }
+
+    private ImageService awaitDelegate() {
+        try {
+            return delegate.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the image service to start");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CompletionException(cause);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 64-bit perceptual "difference hash" of an image. The image is shrunk to 9x8 grey pixels and
+ * each bit records whether a pixel is brighter than its right-hand neighbour. Small changes such
+ * as sensor noise, recompression or a slight change in brightness flip few or no bits, so
+ * near-identical frames have hashes a small Hamming distance apart.
+ * <p>
+ * Each of the 9x8 pixels is the average of an area of the image, not a sample of it: the image
+ * is first brought down to 4x4 pixels per cell with {@link ImageScaler}, then every cell is
+ * averaged. A single scaling step to 9x8 would only look at a few pixels per cell, so a little
+ * movement in a fine pattern could flip bits.
+ */
+public final class DifferenceHash {
+
+    private static final int WIDTH = 9;
+    private static final int HEIGHT = 8;
+    private static final int CELL = 4;
+
+    private DifferenceHash() {
+    }
+
+    public static long of(BufferedImage image) {
+        BufferedImage small = ImageScaler.scale(image, WIDTH * CELL, HEIGHT * CELL);
+        int[] rgb = small.getRGB(0, 0, WIDTH * CELL, HEIGHT * CELL, null, 0, WIDTH * CELL);
+        int[] grey = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT * CELL; y++) {
+            for (int x = 0; x < WIDTH * CELL; x++) {
+                int pixel = rgb[y * WIDTH * CELL + x];
+                // integer Rec. 601 luma, summed over the cell
+                grey[(y / CELL) * WIDTH + x / CELL] +=
+                        77 * ((pixel >> 16) & 0xFF) + 150 * ((pixel >> 8) & 0xFF) + 29 * (pixel & 0xFF);
+            }
+        }
+
+        long hash = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH - 1; x++) {
+                hash = (hash << 1) | (grey[y * WIDTH + x] > grey[y * WIDTH + x + 1] ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return the number of bits in which the two hashes differ
+     */
+    public static int distance(long hash, long otherHash) {
+        return Long.bitCount(hash ^ otherHash);
+    }
+}
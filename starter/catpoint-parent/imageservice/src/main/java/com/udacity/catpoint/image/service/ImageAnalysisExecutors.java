@@ -0,0 +1,48 @@
+package com.udacity.catpoint.image.service;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for running image analysis off the caller's thread.
+ */
+public final class ImageAnalysisExecutors {
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private ImageAnalysisExecutors() {
+    }
+
+    /**
+     * Creates the default executor for image analysis. Analysis mostly waits on the network, so
+     * on a JVM with virtual threads each task gets its own virtual thread. Elsewhere a small pool
+     * of daemon threads is used, which lets its threads die off when idle.
+     */
+    public static ExecutorService newDefaultExecutor() {
+        try {
+            // looked up reflectively so the module still builds and runs on older JVMs
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return newPlatformThreadExecutor(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        }
+    }
+
+    /**
+     * Creates a pool of at most {@code threads} daemon threads, which exit after a minute idle.
+     */
+    public static ExecutorService newPlatformThreadExecutor(int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "image-analysis-" + THREAD_COUNT.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
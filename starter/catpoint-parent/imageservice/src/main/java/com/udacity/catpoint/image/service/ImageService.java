@@ -1,7 +1,21 @@
 package com.udacity.catpoint.image.service;
 
 import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public interface ImageService {
     boolean imageContainsCat(BufferedImage image, float confidenceThreshhold);
+
+    /**
+     * Analyzes the image on the given executor instead of the caller's thread. Cancelling the
+     * returned future, or letting it time out with {@link CompletableFuture#orTimeout}, interrupts
+     * the analysis if it is still running.
+     *
+     * @param executor runs the analysis, see {@link ImageAnalysisExecutors}
+     * @return completes with true if the image contains a cat
+     */
+    default CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold, Executor executor) {
+        return InterruptibleTask.supply(() -> imageContainsCat(image, confidenceThreshhold), executor);
+    }
 }
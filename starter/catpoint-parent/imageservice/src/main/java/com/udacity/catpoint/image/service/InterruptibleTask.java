@@ -0,0 +1,56 @@
+package com.udacity.catpoint.image.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Runs blocking work on an executor and exposes it as a CompletableFuture that can actually stop
+ * the work. A plain {@code supplyAsync} future ignores cancellation; here, when the future is
+ * completed by anything other than the work itself (cancelled, timed out with
+ * {@link CompletableFuture#orTimeout}), the thread still running the work is interrupted.
+ */
+final class InterruptibleTask<T> implements Runnable {
+
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+    private final Supplier<T> work;
+    private Thread runner; // guarded by this
+
+    private InterruptibleTask(Supplier<T> work) {
+        this.work = work;
+    }
+
+    static <T> CompletableFuture<T> supply(Supplier<T> work, Executor executor) {
+        InterruptibleTask<T> task = new InterruptibleTask<>(work);
+        task.future.whenComplete((result, failure) -> task.interruptRunner());
+        executor.execute(task);
+        return task.future;
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (future.isDone()) {
+                return; // cancelled before it started
+            }
+            runner = Thread.currentThread();
+        }
+        try {
+            future.complete(work.get());
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        } finally {
+            synchronized (this) {
+                runner = null;
+            }
+            // an interrupt meant for this work must not leak into the executor's next task
+            Thread.interrupted();
+        }
+    }
+
+    private synchronized void interruptRunner() {
+        if (runner != null && runner != Thread.currentThread()) {
+            runner.interrupt();
+        }
+    }
+}
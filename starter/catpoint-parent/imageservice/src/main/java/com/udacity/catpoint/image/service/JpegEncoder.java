@@ -0,0 +1,202 @@
+package com.udacity.catpoint.image.service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStreamImpl;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Encodes frames as JPEG for upload to a classifier. Frames larger than the classifier needs are
+ * scaled down first, and the JPEG quality is configurable. JPEG writers and output buffers are
+ * pooled and reused across calls, and the writer writes straight into the pooled buffer rather
+ * than through an ImageIO stream cache, so the encoded bytes are only copied once, into the
+ * returned array. Safe to use from several threads.
+ */
+public final class JpegEncoder {
+
+    // a buffer that grew beyond this for an unusually large frame is not kept in the pool
+    private static final int MAX_POOLED_BUFFER_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * In-memory ImageOutputStream over a growable array that is kept between encodes. ImageIO's
+     * own MemoryCacheImageOutputStream would keep a second copy of everything written in its cache.
+     */
+    private static final class ReusableBuffer extends ImageOutputStreamImpl {
+        private byte[] buf = new byte[64 * 1024];
+        private int count;
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(streamPos + 1);
+            buf[(int) streamPos++] = (byte) b;
+            count = Math.max(count, (int) streamPos);
+            bitOffset = 0;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(streamPos + len);
+            System.arraycopy(b, off, buf, (int) streamPos, len);
+            streamPos += len;
+            count = Math.max(count, (int) streamPos);
+            bitOffset = 0;
+        }
+
+        @Override
+        public int read() {
+            bitOffset = 0;
+            return streamPos < count ? buf[(int) streamPos++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            bitOffset = 0;
+            if (streamPos >= count) {
+                return -1;
+            }
+            int n = Math.min(len, count - (int) streamPos);
+            System.arraycopy(buf, (int) streamPos, b, off, n);
+            streamPos += n;
+            return n;
+        }
+
+        @Override
+        public long length() {
+            return count;
+        }
+
+        private void ensureCapacity(long size) {
+            if (size > buf.length) {
+                if (size > Integer.MAX_VALUE - 8) {
+                    throw new OutOfMemoryError("Encoded image too large");
+                }
+                buf = Arrays.copyOf(buf, (int) Math.max(size, Math.min(Integer.MAX_VALUE - 8, 2L * buf.length)));
+            }
+        }
+
+        private byte[] copyOfContents() {
+            return Arrays.copyOf(buf, count);
+        }
+
+        private int capacity() {
+            return buf.length;
+        }
+
+        private void clear() {
+            // seek() refuses to go back past a flushed position, so start over directly
+            streamPos = 0;
+            flushedPos = 0;
+            bitOffset = 0;
+            count = 0;
+        }
+    }
+
+    /**
+     * A writer and buffer pair, used by one encode at a time.
+     */
+    private static final class Slot {
+        private final ImageWriter writer;
+        private final ImageWriteParam param;
+        private final ReusableBuffer buffer = new ReusableBuffer();
+
+        private Slot(ImageWriter writer, float quality) {
+            this.writer = writer;
+            this.param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+        }
+    }
+
+    private final int maxDimension;
+    private final float quality;
+    private final BlockingQueue<Slot> pool;
+
+    /**
+     * @param maxDimension longest side, in pixels, of the encoded image
+     * @param quality      JPEG quality from 0 to 1
+     * @param poolSize     how many writers and buffers to keep for reuse, roughly the number of
+     *                     threads expected to encode at the same time
+     */
+    public JpegEncoder(int maxDimension, float quality, int poolSize) {
+        if (maxDimension < 1) {
+            throw new IllegalArgumentException("Max dimension must be positive");
+        }
+        if (!(quality >= 0 && quality <= 1)) {
+            throw new IllegalArgumentException("JPEG quality must be between 0 and 1");
+        }
+        this.maxDimension = maxDimension;
+        this.quality = quality;
+        this.pool = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    /**
+     * @return the JPEG encoding of the image, scaled down to the maximum size if needed
+     */
+    public byte[] encode(BufferedImage image) throws IOException {
+        BufferedImage prepared = prepare(image);
+        Slot slot = borrow();
+        try {
+            slot.writer.setOutput(slot.buffer);
+            slot.writer.write(null, new IIOImage(prepared, null, null), slot.param);
+            return slot.buffer.copyOfContents();
+        } finally {
+            release(slot);
+        }
+    }
+
+    /**
+     * Scales the image so its longest side fits the maximum, and drops any alpha channel, which
+     * JPEG cannot store. Large frames are scaled in several steps to avoid aliasing. Returns the
+     * image itself when it fits and the writer can take its pixel layout as it is, which includes
+     * the TYPE_3BYTE_BGR that ImageIO decodes JPEG and most PNG files to.
+     */
+    BufferedImage prepare(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+        if (scale == 1.0 && isDirectlyWritable(image)) {
+            return image;
+        }
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        return ImageScaler.scale(image, targetWidth, targetHeight);
+    }
+
+    private static boolean isDirectlyWritable(BufferedImage image) {
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_BYTE_GRAY:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private Slot borrow() throws IOException {
+        Slot slot = pool.poll();
+        if (slot != null) {
+            return slot;
+        }
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("No JPEG writer available");
+        }
+        return new Slot(writers.next(), quality);
+    }
+
+    private void release(Slot slot) {
+        slot.writer.reset();
+        slot.buffer.clear();
+        if (slot.buffer.capacity() > MAX_POOLED_BUFFER_BYTES || !pool.offer(slot)) {
+            slot.writer.dispose();
+        }
+    }
+}
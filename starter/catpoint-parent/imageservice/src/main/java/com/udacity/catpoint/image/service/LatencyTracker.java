@@ -0,0 +1,41 @@
+package com.udacity.catpoint.image.service;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latencies of the most recent calls to estimate a percentile of them. Old samples are
+ * overwritten, so the estimate follows the service as it speeds up or slows down.
+ */
+final class LatencyTracker {
+
+    private final long[] samples; // guarded by this
+    private final int minSamples;
+    private int count; // guarded by this
+    private int next; // guarded by this
+
+    LatencyTracker(int windowSize, int minSamples) {
+        this.samples = new long[windowSize];
+        this.minSamples = minSamples;
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+
+    /**
+     * @param percentile from 0 to 100
+     * @return the latency below which that share of recent calls finished, or -1 while there are
+     * too few samples to tell
+     */
+    synchronized long percentile(double percentile) {
+        if (count < minSamples) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+}
@@ -0,0 +1,198 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ImageService decorator that skips classification of frames that look the same as the last
+ * classified frame from the same camera. Each frame is reduced to a small grid of luminance values
+ * and compared with the grid of the frame the wrapped ImageService last looked at; if few enough
+ * cells changed, the previous verdict is reused. The grid of a skipped frame is not kept, so a
+ * scene that drifts slowly is still classified again once it has drifted far enough.
+ * <p>
+ * Used as a plain ImageService, every frame counts as coming from one camera; with several
+ * cameras, use {@link #forCamera} or pass the camera id. Every camera gets its own buffers,
+ * allocated when its first frame arrives and reused for every later frame of the same size, so
+ * gating a frame does not allocate. Only sampling and comparing a frame is done under the
+ * camera's lock; the wrapped service is called without it, so a slow classification does not hold
+ * up the camera's other frames, which are classified themselves until a verdict is in.
+ */
+public class MotionGate implements ImageService {
+
+    private static final String DEFAULT_CAMERA = "";
+
+    private static final int GRID = 32;
+
+    /**
+     * What the gate remembers about one camera.
+     */
+    private static final class Camera {
+        private int[] reference = new int[GRID * GRID];
+        private int[] current = new int[GRID * GRID];
+        private int[] cellSums = new int[GRID];
+        private int[] cellCounts = new int[GRID];
+        private int[] pixel = new int[4];
+        private boolean hasVerdict;
+        private boolean lastVerdict;
+        private float lastConfidenceThreshold;
+        // bumped whenever the reference grid is replaced, so a verdict that arrives after a newer
+        // frame took over the reference is not stored against it
+        private long generation;
+    }
+
+    private final ImageService imageService;
+    private final int noiseTolerance;
+    private final double maxChangedFraction;
+    private final Map<String, Camera> cameras = new ConcurrentHashMap<>();
+    private final LongAdder classifiedFrames = new LongAdder();
+    private final LongAdder skippedFrames = new LongAdder();
+
+    /**
+     * @param imageService       classifies frames that changed
+     * @param noiseTolerance     how much, from 0 to 255, a cell's luminance may change before the
+     *                           cell counts as changed, to ride out sensor noise and recompression
+     * @param maxChangedFraction the share of changed cells, from 0 to 1, up to which a frame is
+     *                           treated as unchanged
+     */
+    public MotionGate(ImageService imageService, int noiseTolerance, double maxChangedFraction) {
+        if (noiseTolerance < 0 || noiseTolerance > 255) {
+            throw new IllegalArgumentException("Noise tolerance must be between 0 and 255");
+        }
+        if (maxChangedFraction < 0 || maxChangedFraction > 1) {
+            throw new IllegalArgumentException("Changed fraction must be between 0 and 1");
+        }
+        this.imageService = imageService;
+        this.noiseTolerance = noiseTolerance;
+        this.maxChangedFraction = maxChangedFraction;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return imageContainsCat(DEFAULT_CAMERA, image, confidenceThreshhold);
+    }
+
+    /**
+     * Classifies the frame, or reuses the verdict on the last classified frame from the same
+     * camera if the scene has not changed since.
+     */
+    public boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        Camera camera = cameras.computeIfAbsent(cameraId, id -> new Camera());
+        long generation;
+        synchronized (camera) {
+            sampleLuminance(image, camera);
+            if (camera.hasVerdict && camera.lastConfidenceThreshold == confidenceThreshhold
+                    && !changed(camera.reference, camera.current)) {
+                skippedFrames.increment();
+                return camera.lastVerdict;
+            }
+            int[] previous = camera.reference;
+            camera.reference = camera.current;
+            camera.current = previous;
+            camera.hasVerdict = false;
+            generation = ++camera.generation;
+        }
+        boolean cat = imageService.imageContainsCat(image, confidenceThreshhold);
+        classifiedFrames.increment();
+        synchronized (camera) {
+            if (camera.generation == generation) {
+                camera.hasVerdict = true;
+                camera.lastVerdict = cat;
+                camera.lastConfidenceThreshold = confidenceThreshhold;
+            }
+        }
+        return cat;
+    }
+
+    /**
+     * @return an ImageService for one camera's frames that goes through this gate, for example to
+     * build a SecurityService or a FramePipeline around
+     */
+    public ImageService forCamera(String cameraId) {
+        return (image, confidenceThreshhold) -> imageContainsCat(cameraId, image, confidenceThreshhold);
+    }
+
+    /**
+     * Forgets a camera, so its next frame is classified whatever it shows.
+     */
+    public void reset(String cameraId) {
+        cameras.remove(cameraId);
+    }
+
+    public long getClassifiedFrames() {
+        return classifiedFrames.sum();
+    }
+
+    public long getSkippedFrames() {
+        return skippedFrames.sum();
+    }
+
+    private boolean changed(int[] reference, int[] current) {
+        int allowed = (int) (maxChangedFraction * reference.length);
+        int changedCells = 0;
+        for (int i = 0; i < reference.length; i++) {
+            if (Math.abs(reference[i] - current[i]) > noiseTolerance && ++changedCells > allowed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Averages the luminance of the image over a GRID x GRID grid into the camera's current
+     * buffer. Only about four by four pixels per cell are read, which is plenty to see motion.
+     */
+    private static void sampleLuminance(BufferedImage image, Camera camera) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Raster raster = image.getRaster();
+        int bands = raster.getNumBands();
+        // band values are palette indices for indexed images, and too few for colour otherwise
+        boolean readBands = !(image.getColorModel() instanceof IndexColorModel) && (bands == 1 || bands >= 3);
+        if (camera.pixel.length < bands) {
+            camera.pixel = new int[bands];
+        }
+        int[] pixel = camera.pixel;
+        int columnStep = Math.max(1, width / (GRID * 4));
+
+        for (int gridY = 0; gridY < GRID; gridY++) {
+            Arrays.fill(camera.cellSums, 0);
+            Arrays.fill(camera.cellCounts, 0);
+            int fromY = gridY * height / GRID;
+            int toY = Math.max(fromY + 1, (gridY + 1) * height / GRID);
+            int rowStep = Math.max(1, (toY - fromY) / 4);
+            for (int y = fromY; y < toY && y < height; y += rowStep) {
+                for (int x = 0; x < width; x += columnStep) {
+                    int luma;
+                    if (!readBands) {
+                        int rgb = image.getRGB(x, y);
+                        luma = luma((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+                    } else if (bands == 1) {
+                        luma = raster.getPixel(x, y, pixel)[0];
+                    } else {
+                        raster.getPixel(x, y, pixel);
+                        luma = luma(pixel[0], pixel[1], pixel[2]);
+                    }
+                    int cell = x * GRID / width;
+                    camera.cellSums[cell] += luma;
+                    camera.cellCounts[cell]++;
+                }
+            }
+            for (int gridX = 0; gridX < GRID; gridX++) {
+                int count = camera.cellCounts[gridX];
+                // a frame narrower than the grid leaves some cells empty; give them their neighbour's value
+                camera.current[gridY * GRID + gridX] = count == 0
+                        ? (gridX == 0 ? 0 : camera.current[gridY * GRID + gridX - 1])
+                        : camera.cellSums[gridX] / count;
+            }
+        }
+    }
+
+    private static int luma(int r, int g, int b) {
+        return (299 * r + 587 * g + 114 * b) / 1000;
+    }
+}
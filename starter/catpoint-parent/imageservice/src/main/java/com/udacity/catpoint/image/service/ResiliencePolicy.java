@@ -0,0 +1,54 @@
+package com.udacity.catpoint.image.service;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Settings for a {@link ResilientImageService}. Every scan gets {@code callTimeout} to produce a
+ * verdict. A second, hedged request is sent once the first has taken longer than the 95th
+ * percentile of recent scans, but never sooner than {@code minHedgeDelay}. After
+ * {@code failureThreshold} failed scans in a row the circuit opens and scans go straight to the
+ * fallback for {@code openDuration}, after which a single trial scan decides whether to close it.
+ */
+public class ResiliencePolicy {
+
+    private final Duration callTimeout;
+    private final Duration minHedgeDelay;
+    private final int failureThreshold;
+    private final Duration openDuration;
+
+    public ResiliencePolicy(Duration callTimeout, Duration minHedgeDelay, int failureThreshold, Duration openDuration) {
+        if (callTimeout.isNegative() || callTimeout.isZero()) {
+            throw new IllegalArgumentException("Call timeout must be positive");
+        }
+        if (minHedgeDelay.isNegative()) {
+            throw new IllegalArgumentException("Hedge delay must not be negative");
+        }
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("Failure threshold must be at least 1");
+        }
+        if (openDuration.isNegative() || openDuration.isZero()) {
+            throw new IllegalArgumentException("Open duration must be positive");
+        }
+        this.callTimeout = callTimeout;
+        this.minHedgeDelay = Objects.requireNonNull(minHedgeDelay);
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+    }
+
+    public Duration getCallTimeout() {
+        return callTimeout;
+    }
+
+    public Duration getMinHedgeDelay() {
+        return minHedgeDelay;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public Duration getOpenDuration() {
+        return openDuration;
+    }
+}
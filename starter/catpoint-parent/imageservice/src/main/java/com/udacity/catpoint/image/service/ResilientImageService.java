@@ -0,0 +1,241 @@
+package com.udacity.catpoint.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * ImageService decorator that bounds how long a scan by a remote service such as
+ * {@link AwsImageService} can take, following a {@link ResiliencePolicy}.
+ * <p>
+ * Every scan has a deadline. When the first request is slower than the 95th percentile of recent
+ * scans, a second, hedged request is sent and whichever answers first wins; the other is
+ * cancelled. A scan that fails or misses its deadline is answered by the fallback service
+ * instead, and after enough failures in a row a {@link CircuitBreaker} sends scans straight to the
+ * fallback until the remote service has had time to recover. Cancelling a scan cancels its
+ * requests without counting as a failure.
+ */
+public class ResilientImageService implements ImageService {
+
+    private final Logger log = LoggerFactory.getLogger(ResilientImageService.class);
+
+    private static final double HEDGE_PERCENTILE = 95;
+
+    private final ImageService primary;
+    private final ImageService fallback;
+    private final ResiliencePolicy policy;
+    private final Executor executor;
+    private final CircuitBreaker circuitBreaker;
+    private final LatencyTracker latencies = new LatencyTracker(200, 20);
+
+    private final AtomicLong primaryCalls = new AtomicLong();
+    private final AtomicLong hedgedCalls = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong fallbackCalls = new AtomicLong();
+
+    /**
+     * Scans passed to {@link #imageContainsCat} run on a default executor from
+     * {@link ImageAnalysisExecutors}, so their deadline holds however the primary service blocks.
+     */
+    public ResilientImageService(ImageService primary, ImageService fallback, ResiliencePolicy policy) {
+        this(primary, fallback, policy, ImageAnalysisExecutors.newDefaultExecutor());
+    }
+
+    /**
+     * @param executor runs the requests of scans passed to {@link #imageContainsCat}
+     */
+    public ResilientImageService(ImageService primary, ImageService fallback, ResiliencePolicy policy, Executor executor) {
+        this(primary, fallback, policy, executor, System::nanoTime);
+    }
+
+    ResilientImageService(ImageService primary, ImageService fallback, ResiliencePolicy policy, Executor executor,
+                          LongSupplier nanoClock) {
+        this.primary = primary;
+        this.fallback = fallback;
+        this.policy = policy;
+        this.executor = executor;
+        this.circuitBreaker = new CircuitBreaker(policy.getFailureThreshold(), policy.getOpenDuration(), nanoClock);
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        CompletableFuture<Boolean> scan = imageContainsCatAsync(image, confidenceThreshhold, executor);
+        try {
+            return scan.get();
+        } catch (InterruptedException e) {
+            scan.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for a scan");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CompletionException(cause);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold, Executor executor) {
+        if (!circuitBreaker.tryAcquire()) {
+            fallbackCalls.incrementAndGet();
+            return fallback.imageContainsCatAsync(image, confidenceThreshhold, executor);
+        }
+        long start = System.nanoTime();
+        CompletableFuture<Boolean> remote = hedged(image, confidenceThreshhold, executor)
+                .orTimeout(policy.getCallTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        CompletableFuture<Boolean> scan = remote.handle((cat, failure) -> {
+            // timed from the first request, so a hedged scan counts as slow as it really was, and
+            // before the caller has its verdict. A scan missing its deadline counts as the deadline,
+            // a lower bound of how long it would have taken; one given up by the caller says
+            // nothing about the service.
+            if (!remote.isCancelled()) {
+                latencies.record(System.nanoTime() - start);
+            }
+            if (failure == null) {
+                circuitBreaker.recordSuccess();
+                return CompletableFuture.completedFuture(cat);
+            }
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause() : failure;
+            if (cause instanceof CancellationException) {
+                circuitBreaker.release();
+                return CompletableFuture.<Boolean>failedFuture(cause);
+            }
+            circuitBreaker.recordFailure();
+            if (cause instanceof TimeoutException) {
+                timeouts.incrementAndGet();
+                log.warn("Image scan missed its {} deadline, using the fallback", policy.getCallTimeout());
+            } else {
+                log.warn("Image scan failed, using the fallback", cause);
+            }
+            fallbackCalls.incrementAndGet();
+            return fallback.imageContainsCatAsync(image, confidenceThreshhold, executor);
+        }).thenCompose(verdict -> verdict);
+        scan.whenComplete((cat, failure) -> {
+            if (scan.isCancelled()) {
+                remote.cancel(true);
+            }
+        });
+        return scan;
+    }
+
+    /**
+     * Sends the scan to the primary service, and a second time once the first request is slower
+     * than usual. Completes with the first verdict, or fails once every request has failed.
+     */
+    private CompletableFuture<Boolean> hedged(BufferedImage image, float confidenceThreshold, Executor executor) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        List<CompletableFuture<Boolean>> attempts = new CopyOnWriteArrayList<>();
+        long usualLatency = latencies.percentile(HEDGE_PERCENTILE);
+        long hedgeDelay = Math.max(usualLatency, policy.getMinHedgeDelay().toNanos());
+        // no hedging until there is a history to compare with, or if it could not beat the deadline
+        boolean hedge = usualLatency >= 0 && hedgeDelay < policy.getCallTimeout().toNanos();
+        AtomicInteger pending = new AtomicInteger(hedge ? 2 : 1);
+        AtomicBoolean answered = new AtomicBoolean();
+
+        attempt(image, confidenceThreshold, executor, result, attempts, pending, answered, false);
+        if (hedge) {
+            CompletableFuture.delayedExecutor(hedgeDelay, TimeUnit.NANOSECONDS, executor).execute(() -> {
+                if (!result.isDone()) {
+                    hedgedCalls.incrementAndGet();
+                    attempt(image, confidenceThreshold, executor, result, attempts, pending, answered, true);
+                }
+            });
+        }
+        // the first verdict, a deadline or a cancellation ends every request still running
+        result.whenComplete((cat, failure) -> attempts.forEach(attempt -> attempt.cancel(true)));
+        return result;
+    }
+
+    /**
+     * Sends one request. Requests are not timed one by one: a request cancelled because another
+     * answered first would count only the time until then, and such short samples would pull the
+     * percentile down until every scan is hedged.
+     */
+    private void attempt(BufferedImage image, float confidenceThreshold, Executor executor, CompletableFuture<Boolean> result,
+                         List<CompletableFuture<Boolean>> attempts, AtomicInteger pending, AtomicBoolean answered,
+                         boolean hedge) {
+        primaryCalls.incrementAndGet();
+        CompletableFuture<Boolean> attempt;
+        try {
+            attempt = primary.imageContainsCatAsync(image, confidenceThreshold, executor);
+        } catch (RuntimeException e) {
+            attempt = CompletableFuture.failedFuture(e);
+        }
+        attempts.add(attempt);
+        if (result.isDone()) {
+            attempt.cancel(true);
+        }
+        attempt.whenComplete((cat, failure) -> {
+            if (failure == null) {
+                // counted before completing, so the count is up to date once the caller has its verdict
+                if (answered.compareAndSet(false, true) && hedge) {
+                    hedgeWins.incrementAndGet();
+                }
+                result.complete(cat);
+            } else if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(failure);
+            }
+        });
+    }
+
+    /**
+     * @return the recent scan time beyond which a scan is hedged, in nanoseconds, or -1 while there
+     * are too few scans to tell
+     */
+    long getUsualLatencyNanos() {
+        return latencies.percentile(HEDGE_PERCENTILE);
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    /**
+     * @return how many requests were sent to the primary service, hedged ones included
+     */
+    public long getPrimaryCallCount() {
+        return primaryCalls.get();
+    }
+
+    public long getHedgedCallCount() {
+        return hedgedCalls.get();
+    }
+
+    /**
+     * @return how many hedged requests answered before the request they were hedging
+     */
+    public long getHedgeWinCount() {
+        return hedgeWins.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.get();
+    }
+
+    /**
+     * @return how many scans were answered by the fallback service
+     */
+    public long getFallbackCallCount() {
+        return fallbackCalls.get();
+    }
+}
@@ -0,0 +1,264 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ImageService decorator that makes concurrent scans of identical images share one call to the
+ * wrapped service. While a scan is in flight, a request for an image with the same pixels and the
+ * same confidence threshold waits for that scan's verdict instead of starting its own. Once the
+ * scan finishes it is forgotten, so unlike {@link CachingImageService} nothing is remembered
+ * between scans and a later identical frame is looked at afresh.
+ * <p>
+ * Images are matched by their size and a 64-bit hash of every pixel. A failed scan fails every
+ * caller waiting on it. An asynchronous scan is only cancelled once every caller sharing it has
+ * cancelled or timed out; one impatient caller does not take the verdict away from the others,
+ * including a blocking caller that joined it.
+ */
+public class SingleFlightImageService implements ImageService {
+
+    private static final class Key {
+        private final int width;
+        private final int height;
+        private final long contentHash;
+        private final float confidenceThreshold;
+
+        private Key(BufferedImage image, float confidenceThreshold) {
+            this.width = image.getWidth();
+            this.height = image.getHeight();
+            this.contentHash = contentHash(image);
+            this.confidenceThreshold = confidenceThreshold;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return width == key.width && height == key.height && contentHash == key.contentHash
+                    && Float.compare(confidenceThreshold, key.confidenceThreshold) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(contentHash) + Float.hashCode(confidenceThreshold);
+        }
+    }
+
+    /**
+     * A scan in progress and, if it was started asynchronously, the callers still waiting for it.
+     */
+    private static final class Flight {
+        private final CompletableFuture<Boolean> result;
+        private final boolean cancellable;
+        private int waiters; // guarded by this
+        private boolean abandoned; // guarded by this; set once the last waiter has given up
+
+        private Flight(CompletableFuture<Boolean> result, boolean cancellable) {
+            this.result = result;
+            this.cancellable = cancellable;
+        }
+    }
+
+    private final ImageService delegate;
+    private final Map<Key, Flight> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong savedCalls = new AtomicLong();
+
+    public SingleFlightImageService(ImageService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if (image == null) {
+            return delegate.imageContainsCat(image, confidenceThreshhold);
+        }
+        Key key = new Key(image, confidenceThreshhold);
+        Flight own = new Flight(new CompletableFuture<>(), false);
+        Flight flight;
+        while ((flight = inFlight.putIfAbsent(key, own)) != null) {
+            if (!flight.cancellable) {
+                savedCalls.incrementAndGet();
+                return await(flight.result);
+            }
+            if (enter(flight)) {
+                savedCalls.incrementAndGet();
+                try {
+                    return await(flight.result);
+                } finally {
+                    if (!flight.result.isDone()) {
+                        leave(flight);
+                    }
+                }
+            }
+            // abandoned by all its callers just now; this caller still wants a verdict
+            inFlight.remove(key, flight);
+        }
+        calls.incrementAndGet();
+        try {
+            boolean cat = delegate.imageContainsCat(image, confidenceThreshhold);
+            own.result.complete(cat);
+            return cat;
+        } catch (RuntimeException | Error e) {
+            own.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold, Executor executor) {
+        if (image == null) {
+            return delegate.imageContainsCatAsync(image, confidenceThreshhold, executor);
+        }
+        Key key = new Key(image, confidenceThreshhold);
+        while (true) {
+            Flight flight = inFlight.get(key);
+            if (flight == null) {
+                Flight own = new Flight(new CompletableFuture<>(), true);
+                if (inFlight.putIfAbsent(key, own) == null) {
+                    calls.incrementAndGet();
+                    enter(own);
+                    start(key, own, image, confidenceThreshhold, executor);
+                    return view(own);
+                }
+            } else if (!flight.cancellable) {
+                savedCalls.incrementAndGet();
+                return flight.result.thenApply(cat -> cat);
+            } else if (enter(flight)) {
+                savedCalls.incrementAndGet();
+                return view(flight);
+            } else {
+                // abandoned by all its callers just now; this caller still wants a verdict
+                inFlight.remove(key, flight);
+            }
+        }
+    }
+
+    private void start(Key key, Flight flight, BufferedImage image, float confidenceThreshold, Executor executor) {
+        flight.result.whenComplete((cat, failure) -> inFlight.remove(key, flight));
+        try {
+            CompletableFuture<Boolean> analysis = delegate.imageContainsCatAsync(image, confidenceThreshold, executor);
+            analysis.whenComplete((cat, failure) -> {
+                if (failure == null) {
+                    flight.result.complete(cat);
+                } else {
+                    flight.result.completeExceptionally(failure);
+                }
+            });
+            flight.result.whenComplete((cat, failure) -> {
+                if (flight.result.isCancelled()) {
+                    analysis.cancel(true);
+                }
+            });
+        } catch (RuntimeException e) {
+            flight.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Counts one more caller waiting for a cancellable flight.
+     *
+     * @return false if every earlier caller has already given up, so the flight is being cancelled
+     */
+    private static boolean enter(Flight flight) {
+        synchronized (flight) {
+            if (flight.abandoned) {
+                return false;
+            }
+            flight.waiters++;
+            return true;
+        }
+    }
+
+    /**
+     * Counts one caller giving up on a cancellable flight; the last one to do so stops the scan.
+     */
+    private static void leave(Flight flight) {
+        synchronized (flight) {
+            if (--flight.waiters > 0) {
+                return;
+            }
+            flight.abandoned = true;
+        }
+        flight.result.cancel(true);
+    }
+
+    /**
+     * @return a future for one counted caller of the flight, which the caller may cancel or time
+     * out without affecting anyone else
+     */
+    private static CompletableFuture<Boolean> view(Flight flight) {
+        CompletableFuture<Boolean> view = flight.result.thenApply(cat -> cat);
+        view.whenComplete((cat, failure) -> {
+            if (!flight.result.isDone()) {
+                leave(flight);
+            }
+        });
+        return view;
+    }
+
+    private static boolean await(CompletableFuture<Boolean> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for an identical scan");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CompletionException(cause);
+        }
+    }
+
+    private static long contentHash(BufferedImage image) {
+        int width = image.getWidth();
+        int[] row = new int[width];
+        long hash = 0xCBF29CE484222325L;
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int rgb : row) {
+                hash = (hash ^ rgb) * 0x100000001B3L;
+            }
+        }
+        // spread the last pixels' bits over the whole hash
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * @return how many scans were passed on to the wrapped service
+     */
+    public long getCallCount() {
+        return calls.get();
+    }
+
+    /**
+     * @return how many scans shared a call already in flight instead of making their own
+     */
+    public long getSavedCallCount() {
+        return savedCalls.get();
+    }
+
+    /**
+     * @return how many distinct scans are in flight right now
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
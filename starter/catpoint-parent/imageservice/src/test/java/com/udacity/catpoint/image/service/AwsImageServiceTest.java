@@ -0,0 +1,28 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that a bad configuration leaves the service unconfigured instead of failing to start.
+ */
+public class AwsImageServiceTest {
+
+    @Test
+    public void badOptionalValues_fallBackToDefaults() {
+        Properties props = new Properties();
+        props.setProperty("aws.image.maxDimension", "large");
+        props.setProperty("aws.image.jpegQuality", "2.5");
+        props.setProperty("aws.timeout.callMillis", "-1");
+
+        AwsImageService service = assertDoesNotThrow(() -> new AwsImageService(props));
+
+        assertFalse(service.isConfigured());
+        assertThrows(IllegalStateException.class,
+                () -> service.imageContainsCat(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), 50f));
+    }
+}
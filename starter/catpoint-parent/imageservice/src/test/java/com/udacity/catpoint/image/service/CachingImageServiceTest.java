@@ -0,0 +1,119 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that near-identical frames are answered from the cache and that entries expire.
+ */
+public class CachingImageServiceTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final ImageService countingService = (image, threshold) -> {
+        calls.incrementAndGet();
+        return true;
+    };
+    private long now;
+
+    private static BufferedImage scene(int brightness) {
+        BufferedImage image = new BufferedImage(90, 80, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(brightness, brightness, brightness));
+        g.fillRect(0, 0, 90, 80);
+        g.setColor(Color.WHITE);
+        g.fillRect(20, 20, 30, 30);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * A scene that gets darker from left to right, so every hash bit differs from {@link #scene}.
+     */
+    private static BufferedImage otherScene() {
+        BufferedImage image = new BufferedImage(90, 80, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < 90; x++) {
+            for (int y = 0; y < 80; y++) {
+                int grey = 255 - x * 2;
+                image.setRGB(x, y, new Color(grey, grey, grey).getRGB());
+            }
+        }
+        return image;
+    }
+
+    @Test
+    public void similarFrames_areAnsweredFromCache() {
+        CachingImageService cache = new CachingImageService(countingService, 16, Duration.ofMinutes(1), 4, () -> now);
+
+        assertTrue(cache.imageContainsCat(scene(40), 50f));
+        assertTrue(cache.imageContainsCat(scene(42), 50f));
+
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    /**
+     * A faint left-to-right gradient under strong per-pixel noise, the noise shifted right by
+     * {@code shift} pixels. The scene is the same whatever the shift.
+     */
+    private static BufferedImage noisyScene(int shift) {
+        Random random = new Random(7);
+        int[] noise = new int[900 * 800 + shift];
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = random.nextInt(121) - 60;
+        }
+        BufferedImage image = new BufferedImage(900, 800, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 800; y++) {
+            for (int x = 0; x < 900; x++) {
+                int grey = 100 + (899 - x) / 20 + noise[y * 900 + x + shift];
+                image.setRGB(x, y, new Color(grey, grey, grey).getRGB());
+            }
+        }
+        return image;
+    }
+
+    @Test
+    public void noisyFramesOfSameScene_areAnsweredFromCache() {
+        CachingImageService cache = new CachingImageService(countingService, 16, Duration.ofMinutes(1), 4, () -> now);
+
+        cache.imageContainsCat(noisyScene(0), 50f);
+        cache.imageContainsCat(noisyScene(1), 50f);
+
+        assertEquals(1, calls.get());
+        assertTrue(DifferenceHash.distance(DifferenceHash.of(noisyScene(0)), DifferenceHash.of(noisyScene(1))) <= 4);
+    }
+
+    @Test
+    public void differentThresholdOrScene_missesCache() {
+        CachingImageService cache = new CachingImageService(countingService, 16, Duration.ofMinutes(1), 4, () -> now);
+
+        cache.imageContainsCat(scene(40), 50f);
+        cache.imageContainsCat(scene(40), 90f);
+        cache.imageContainsCat(otherScene(), 50f);
+
+        assertEquals(3, calls.get());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void expiredAndLeastRecentlyUsedEntries_areEvicted() {
+        CachingImageService cache = new CachingImageService(countingService, 1, Duration.ofSeconds(10), 0, () -> now);
+
+        cache.imageContainsCat(scene(40), 50f);
+        cache.imageContainsCat(scene(40), 90f);
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        now += Duration.ofSeconds(11).toNanos();
+        cache.imageContainsCat(scene(40), 90f);
+        assertEquals(3, calls.get());
+    }
+}
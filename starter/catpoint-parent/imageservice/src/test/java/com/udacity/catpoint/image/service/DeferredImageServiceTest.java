@@ -0,0 +1,111 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that scans wait for, and then use, an image service that is created in the background.
+ */
+public class DeferredImageServiceTest {
+
+    private final CompletableFuture<ImageService> created = new CompletableFuture<>();
+    private final DeferredImageService imageService = new DeferredImageService(created);
+    private final BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+
+    @Test
+    void scan_waitsForServiceToBeCreated() throws Exception {
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> verdict = caller.submit(() -> imageService.imageContainsCat(image, 50.0f));
+            Thread.sleep(50);
+            assertFalse(verdict.isDone());
+            assertFalse(imageService.isReady());
+
+            created.complete((img, threshold) -> true);
+            assertTrue(verdict.get(1, TimeUnit.SECONDS));
+            assertTrue(imageService.isReady());
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+
+    @Test
+    void asyncScan_completesOnceServiceIsCreated() throws Exception {
+        CompletableFuture<Boolean> verdict = imageService.imageContainsCatAsync(image, 50.0f, Runnable::run);
+        assertFalse(verdict.isDone());
+
+        created.complete((img, threshold) -> true);
+        assertTrue(verdict.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void asyncScan_cancelled_interruptsRunningScan() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        created.complete((img, threshold) -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            return true;
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<Boolean> verdict = imageService.imageContainsCatAsync(image, 50.0f, executor);
+            assertTrue(started.await(1, TimeUnit.SECONDS));
+            verdict.cancel(true);
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+            assertTrue(interrupted.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void asyncScanThrowingInsteadOfFailing_failsWithCause() {
+        IllegalStateException cause = new IllegalStateException("executor shut down");
+        created.complete(new ImageService() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+                return true;
+            }
+
+            @Override
+            public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold,
+                                                                    Executor executor) {
+                throw cause;
+            }
+        });
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> imageService.imageContainsCatAsync(image, 50.0f, Runnable::run).get(1, TimeUnit.SECONDS));
+        assertSame(cause, failure.getCause());
+    }
+
+    @Test
+    void serviceFailedToStart_scansFailWithCause() {
+        IllegalStateException cause = new IllegalStateException("no credentials");
+        created.completeExceptionally(cause);
+
+        assertSame(cause, assertThrows(IllegalStateException.class, () -> imageService.imageContainsCat(image, 50.0f)));
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> imageService.imageContainsCatAsync(image, 50.0f, Runnable::run).get());
+        assertSame(cause, failure.getCause());
+        assertFalse(imageService.isReady());
+    }
+}
@@ -0,0 +1,45 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageScalerTest {
+
+    @Test
+    void scaleToFit_keepsAspectRatio() {
+        BufferedImage scaled = ImageScaler.scaleToFit(new BufferedImage(4000, 3000, BufferedImage.TYPE_3BYTE_BGR), 1024);
+        assertEquals(1024, scaled.getWidth());
+        assertEquals(768, scaled.getHeight());
+    }
+
+    @Test
+    void scaleToFit_imageAlreadySmallEnough_returnsSameImage() {
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        assertSame(image, ImageScaler.scaleToFit(image, 1024));
+    }
+
+    @Test
+    void scale_dropsAlphaChannel() {
+        BufferedImage scaled = ImageScaler.scale(new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB), 100, 100);
+        assertEquals(BufferedImage.TYPE_INT_RGB, scaled.getType());
+    }
+
+    @Test
+    void scale_largeReduction_averagesFineDetail() {
+        // one-pixel stripes, a quarter of them white; a single bilinear step would pick whole stripes
+        BufferedImage image = new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y += 4) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, 0xFFFFFF);
+            }
+        }
+        BufferedImage scaled = ImageScaler.scale(image, 300, 225);
+        for (int y = 10; y < scaled.getHeight(); y += 50) {
+            int gray = scaled.getRGB(scaled.getWidth() / 2, y) & 0xFF;
+            assertEquals(0x40, gray, 0x10);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that frames are scaled and stripped of alpha before encoding, and that pooled writers
+ * and buffers give the same output as fresh ones.
+ */
+public class JpegEncoderTest {
+
+    private static BufferedImage noise(int width, int height, int type) {
+        Random random = new Random(3);
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, 0xFF000000 | random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage decode(byte[] jpeg) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(jpeg));
+    }
+
+    @Test
+    public void largeFrame_isScaledToMaxDimension() throws IOException {
+        JpegEncoder encoder = new JpegEncoder(100, 0.8f, 1);
+
+        BufferedImage decoded = decode(encoder.encode(noise(400, 300, BufferedImage.TYPE_INT_RGB)));
+
+        assertEquals(100, decoded.getWidth());
+        assertEquals(75, decoded.getHeight());
+    }
+
+    @Test
+    public void frameWithAlpha_isEncodedWithoutIt() throws IOException {
+        JpegEncoder encoder = new JpegEncoder(100, 0.8f, 1);
+        BufferedImage translucent = noise(50, 50, BufferedImage.TYPE_INT_ARGB);
+
+        assertFalse(encoder.prepare(translucent).getColorModel().hasAlpha());
+        BufferedImage decoded = decode(encoder.encode(translucent));
+        assertEquals(50, decoded.getWidth());
+        assertFalse(decoded.getColorModel().hasAlpha());
+    }
+
+    @Test
+    public void decodedFrameThatFits_isNotRedrawn() {
+        JpegEncoder encoder = new JpegEncoder(100, 0.8f, 1);
+        BufferedImage bgr = new BufferedImage(80, 60, BufferedImage.TYPE_3BYTE_BGR);
+
+        assertSame(bgr, encoder.prepare(bgr));
+    }
+
+    @Test
+    public void qualityOutsideZeroToOne_isRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new JpegEncoder(100, -0.1f, 1));
+        assertThrows(IllegalArgumentException.class, () -> new JpegEncoder(100, 1.1f, 1));
+        assertThrows(IllegalArgumentException.class, () -> new JpegEncoder(100, Float.NaN, 1));
+    }
+
+    @Test
+    public void higherQuality_givesLargerOutput() throws IOException {
+        BufferedImage image = noise(100, 100, BufferedImage.TYPE_INT_RGB);
+
+        int low = new JpegEncoder(100, 0.3f, 1).encode(image).length;
+        int high = new JpegEncoder(100, 0.95f, 1).encode(image).length;
+
+        assertTrue(high > low, "quality 0.95 gave " + high + " bytes, 0.3 gave " + low);
+    }
+
+    @Test
+    public void pooledWriter_givesSameOutputAsFreshOne() throws IOException {
+        BufferedImage large = noise(300, 300, BufferedImage.TYPE_INT_RGB);
+        BufferedImage small = noise(20, 20, BufferedImage.TYPE_INT_RGB);
+        JpegEncoder pooled = new JpegEncoder(300, 0.8f, 1);
+
+        byte[] first = pooled.encode(small);
+        pooled.encode(large);
+        byte[] again = pooled.encode(small);
+
+        // a reused buffer must not leak bytes of the larger frame written before
+        assertArrayEquals(first, again);
+        assertArrayEquals(new JpegEncoder(300, 0.8f, 1).encode(small), again);
+    }
+
+    @Test
+    public void concurrentEncodes_giveSameOutput() throws Exception {
+        BufferedImage image = noise(120, 90, BufferedImage.TYPE_INT_RGB);
+        JpegEncoder encoder = new JpegEncoder(100, 0.8f, 2);
+        byte[] expected = encoder.encode(image);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                results.add(executor.submit(() -> encoder.encode(image)));
+            }
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that unchanged frames reuse the last verdict per camera and changed frames are classified.
+ */
+public class MotionGateTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final ImageService countingService = (image, threshold) -> {
+        calls.incrementAndGet();
+        return true;
+    };
+    private final MotionGate gate = new MotionGate(countingService, 8, 0.02);
+
+    private static BufferedImage scene(int boxX, int type) {
+        BufferedImage image = new BufferedImage(320, 240, type);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.DARK_GRAY);
+        g.fillRect(0, 0, 320, 240);
+        g.setColor(Color.ORANGE);
+        g.fillRect(boxX, 80, 80, 80);
+        g.dispose();
+        return image;
+    }
+
+    @Test
+    void unchangedFrames_reuseVerdict() {
+        assertTrue(gate.imageContainsCat("door", scene(20, BufferedImage.TYPE_INT_RGB), 50.0f));
+        assertTrue(gate.imageContainsCat("door", scene(20, BufferedImage.TYPE_INT_RGB), 50.0f));
+        assertTrue(gate.imageContainsCat("door", scene(20, BufferedImage.TYPE_3BYTE_BGR), 50.0f));
+        assertEquals(1, calls.get());
+        assertEquals(1, gate.getClassifiedFrames());
+        assertEquals(2, gate.getSkippedFrames());
+    }
+
+    @Test
+    void slightNoise_reusesVerdict() {
+        BufferedImage noisy = scene(20, BufferedImage.TYPE_INT_RGB);
+        noisy.setRGB(100, 100, Color.WHITE.getRGB());
+        gate.imageContainsCat("door", scene(20, BufferedImage.TYPE_INT_RGB), 50.0f);
+        gate.imageContainsCat("door", noisy, 50.0f);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void movedObject_isClassified() {
+        gate.imageContainsCat("door", scene(20, BufferedImage.TYPE_INT_RGB), 50.0f);
+        gate.imageContainsCat("door", scene(200, BufferedImage.TYPE_INT_RGB), 50.0f);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void slowClassification_doesNotHoldUpSameCamera() throws Exception {
+        CountDownLatch classifying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MotionGate slowGate = new MotionGate((image, threshold) -> {
+            if (image.getRGB(0, 0) == Color.DARK_GRAY.getRGB()) {
+                classifying.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return false;
+        }, 8, 0.02);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> slow = executor.submit(() -> slowGate.imageContainsCat(scene(20, BufferedImage.TYPE_INT_RGB), 50.0f));
+            assertTrue(classifying.await(1, TimeUnit.SECONDS));
+
+            BufferedImage black = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+            assertTimeoutPreemptively(Duration.ofSeconds(1), () -> slowGate.imageContainsCat(black, 50.0f));
+
+            release.countDown();
+            assertFalse(slow.get(1, TimeUnit.SECONDS));
+            // the verdict on the older frame is not stored against the newer reference
+            slowGate.imageContainsCat(black, 50.0f);
+            assertEquals(1, slowGate.getSkippedFrames());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void camerasAndThresholds_areGatedSeparately() {
+        ImageService garden = gate.forCamera("garden");
+        gate.imageContainsCat("door", scene(20, BufferedImage.TYPE_INT_RGB), 50.0f);
+        garden.imageContainsCat(scene(20, BufferedImage.TYPE_INT_RGB), 50.0f);
+        gate.imageContainsCat("door", scene(20, BufferedImage.TYPE_INT_RGB), 80.0f);
+        assertEquals(3, calls.get());
+
+        gate.reset("garden");
+        garden.imageContainsCat(scene(20, BufferedImage.TYPE_INT_RGB), 50.0f);
+        assertEquals(4, calls.get());
+    }
+}
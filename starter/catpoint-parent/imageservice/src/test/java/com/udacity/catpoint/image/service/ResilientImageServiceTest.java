@@ -0,0 +1,170 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests deadlines, hedging and the circuit breaker of the resilient decorator.
+ */
+public class ResilientImageServiceTest {
+
+    private final BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ImageService fallback = (image, threshold) -> false;
+    private final AtomicInteger calls = new AtomicInteger();
+    private long now;
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Scan interrupted");
+        }
+    }
+
+    private ResilientImageService resilient(ImageService primary, ResiliencePolicy policy) {
+        return new ResilientImageService(primary, fallback, policy, executor, () -> now);
+    }
+
+    @Test
+    void slowScan_missesDeadline_usesFallback() {
+        ResilientImageService imageService = resilient((image, threshold) -> {
+            sleep(5_000);
+            return true;
+        }, new ResiliencePolicy(Duration.ofMillis(100), Duration.ZERO, 5, Duration.ofSeconds(30)));
+
+        long start = System.nanoTime();
+        assertFalse(imageService.imageContainsCat(image, 50.0f));
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(2).toNanos());
+        assertEquals(1, imageService.getTimeoutCount());
+        assertEquals(1, imageService.getFallbackCallCount());
+    }
+
+    @Test
+    void slowFirstRequest_isHedged() {
+        ResilientImageService imageService = resilient((image, threshold) -> {
+            // after the warm-up, the first request of the next scan hangs and its hedge answers quickly
+            if (calls.incrementAndGet() == 31) {
+                sleep(5_000);
+            }
+            return true;
+        }, new ResiliencePolicy(Duration.ofSeconds(3), Duration.ofMillis(20), 5, Duration.ofSeconds(30)));
+
+        for (int i = 0; i < 30; i++) {
+            assertTrue(imageService.imageContainsCat(image, 50.0f));
+        }
+        assertEquals(0, imageService.getHedgedCallCount());
+
+        long start = System.nanoTime();
+        assertTrue(imageService.imageContainsCat(image, 50.0f));
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(2).toNanos());
+        assertEquals(1, imageService.getHedgedCallCount());
+        assertEquals(1, imageService.getHedgeWinCount());
+        assertEquals(0, imageService.getFallbackCallCount());
+    }
+
+    @Test
+    void timedOutRequests_countTowardsUsualLatency() {
+        ResilientImageService imageService = resilient((image, threshold) -> {
+            // after the warm-up, every request hangs past the deadline
+            if (calls.incrementAndGet() > 20) {
+                sleep(5_000);
+            }
+            return true;
+        }, new ResiliencePolicy(Duration.ofMillis(100), Duration.ofMillis(10), 100, Duration.ofSeconds(30)));
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(imageService.imageContainsCat(image, 50.0f));
+        }
+        int slowScans = 6;
+        for (int i = 0; i < slowScans; i++) {
+            assertFalse(imageService.imageContainsCat(image, 50.0f));
+        }
+        // once the timed-out requests push the 95th percentile to the deadline, hedging stops
+        assertEquals(slowScans, imageService.getTimeoutCount());
+        assertTrue(imageService.getHedgedCallCount() < slowScans);
+    }
+
+    @Test
+    void repeatedHedging_doesNotPullUsualLatencyDown() {
+        ResilientImageService imageService = resilient((image, threshold) -> {
+            int call = calls.incrementAndGet();
+            // after the warm-up, the first request of every scan hangs and its hedge answers at once
+            if (call <= 20) {
+                sleep(30);
+            } else if (call % 2 == 1) {
+                sleep(5_000);
+            }
+            return true;
+        }, new ResiliencePolicy(Duration.ofSeconds(3), Duration.ofMillis(10), 100, Duration.ofSeconds(30)));
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(imageService.imageContainsCat(image, 50.0f));
+        }
+        long usualLatency = imageService.getUsualLatencyNanos();
+        assertTrue(usualLatency >= Duration.ofMillis(30).toNanos());
+
+        int hedgedScans = 30;
+        for (int i = 0; i < hedgedScans; i++) {
+            assertTrue(imageService.imageContainsCat(image, 50.0f));
+            // the hung requests cancelled by their hedges must not count as quick answers
+            long latest = imageService.getUsualLatencyNanos();
+            assertTrue(latest >= usualLatency, "usual latency fell from " + usualLatency + " to " + latest);
+            usualLatency = latest;
+        }
+        assertEquals(hedgedScans, imageService.getHedgeWinCount());
+        assertEquals(0, imageService.getFallbackCallCount());
+    }
+
+    @Test
+    void repeatedFailures_openCircuit_untilTrialSucceeds() {
+        AtomicInteger failuresLeft = new AtomicInteger(3);
+        ResilientImageService imageService = resilient((image, threshold) -> {
+            calls.incrementAndGet();
+            if (failuresLeft.getAndDecrement() > 0) {
+                throw new IllegalStateException("Service unavailable");
+            }
+            return true;
+        }, new ResiliencePolicy(Duration.ofSeconds(3), Duration.ZERO, 3, Duration.ofSeconds(30)));
+
+        for (int i = 0; i < 3; i++) {
+            assertFalse(imageService.imageContainsCat(image, 50.0f));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, imageService.getCircuitState());
+        assertFalse(imageService.imageContainsCat(image, 50.0f));
+        assertEquals(3, calls.get());
+
+        now += Duration.ofSeconds(30).toNanos();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, imageService.getCircuitState());
+        assertTrue(imageService.imageContainsCat(image, 50.0f));
+        assertEquals(CircuitBreaker.State.CLOSED, imageService.getCircuitState());
+        assertEquals(4, imageService.getFallbackCallCount());
+    }
+
+    @Test
+    void unconfiguredAwsService_failsOverInsteadOfThrowingNullPointer() {
+        AwsImageService aws = new AwsImageService(new Properties());
+        assertFalse(aws.isConfigured());
+        assertThrows(IllegalStateException.class, () -> aws.imageContainsCat(image, 50.0f));
+
+        ResilientImageService imageService = resilient(aws,
+                new ResiliencePolicy(Duration.ofSeconds(3), Duration.ZERO, 1, Duration.ofSeconds(30)));
+        assertFalse(imageService.imageContainsCat(image, 50.0f));
+        assertEquals(CircuitBreaker.State.OPEN, imageService.getCircuitState());
+    }
+}
@@ -0,0 +1,161 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that concurrent scans of identical images share one call to the wrapped service.
+ */
+public class SingleFlightImageServiceTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ImageService slowService = (image, threshold) -> {
+        calls.incrementAndGet();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Scan interrupted");
+        }
+        return (image.getRGB(0, 0) & 0xFFFFFF) != 0;
+    };
+    private final SingleFlightImageService imageService = new SingleFlightImageService(slowService);
+
+    private static BufferedImage frame(int rgb) {
+        BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, rgb);
+        return image;
+    }
+
+    private void awaitCalls(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (calls.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, calls.get());
+    }
+
+    @Test
+    void identicalConcurrentScans_shareOneCall() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            results.add(callers.submit(() -> imageService.imageContainsCat(frame(0xFFFFFF), 50.0f)));
+            awaitCalls(1);
+            for (int i = 0; i < 3; i++) {
+                results.add(callers.submit(() -> imageService.imageContainsCat(frame(0xFFFFFF), 50.0f)));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (imageService.getSavedCallCount() < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(1, calls.get());
+        assertEquals(1, imageService.getCallCount());
+        assertEquals(3, imageService.getSavedCallCount());
+        assertEquals(0, imageService.getInFlightCount());
+    }
+
+    @Test
+    void differentImagesOrThresholds_areScannedSeparately() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            CompletableFuture<Boolean> first = imageService.imageContainsCatAsync(frame(0xFFFFFF), 50.0f, executor);
+            CompletableFuture<Boolean> other = imageService.imageContainsCatAsync(frame(0), 50.0f, executor);
+            CompletableFuture<Boolean> stricter = imageService.imageContainsCatAsync(frame(0xFFFFFF), 80.0f, executor);
+            release.countDown();
+            assertTrue(first.get(5, TimeUnit.SECONDS));
+            assertFalse(other.get(5, TimeUnit.SECONDS));
+            assertTrue(stricter.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(3, calls.get());
+        assertEquals(0, imageService.getSavedCallCount());
+    }
+
+    @Test
+    void cancelledCaller_doesNotCancelSharedScan() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            CompletableFuture<Boolean> impatient = imageService.imageContainsCatAsync(frame(0xFFFFFF), 50.0f, executor);
+            CompletableFuture<Boolean> patient = imageService.imageContainsCatAsync(frame(0xFFFFFF), 50.0f, executor);
+            awaitCalls(1);
+            impatient.cancel(true);
+            release.countDown();
+            assertTrue(patient.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, calls.get());
+        assertEquals(1, imageService.getSavedCallCount());
+    }
+
+    @Test
+    void blockingCallerJoiningAsyncScan_keepsItAlive_whenAsyncCallersCancel() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            CompletableFuture<Boolean> async = imageService.imageContainsCatAsync(frame(0xFFFFFF), 50.0f, executor);
+            awaitCalls(1);
+            Future<Boolean> blocking = executor.submit(() -> imageService.imageContainsCat(frame(0xFFFFFF), 50.0f));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (imageService.getSavedCallCount() < 1 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            async.cancel(true);
+            release.countDown();
+            assertTrue(blocking.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void allCallersCancelled_interruptsScan() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            CompletableFuture<Boolean> first = imageService.imageContainsCatAsync(frame(0xFFFFFF), 50.0f, executor);
+            CompletableFuture<Boolean> second = imageService.imageContainsCatAsync(frame(0xFFFFFF), 50.0f, executor);
+            awaitCalls(1);
+            first.cancel(true);
+            second.cancel(true);
+
+            // the slow scan was interrupted, so the next identical request starts a new one
+            CompletableFuture<Boolean> retry = imageService.imageContainsCatAsync(frame(0xFFFFFF), 50.0f, executor);
+            awaitCalls(2);
+            release.countDown();
+            assertTrue(retry.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedScan_failsEveryWaitingCaller() throws Exception {
+        SingleFlightImageService failing = new SingleFlightImageService((image, threshold) -> {
+            throw new IllegalStateException("Service unavailable");
+        });
+        assertThrows(IllegalStateException.class, () -> failing.imageContainsCat(frame(0xFFFFFF), 50.0f));
+        assertEquals(0, failing.getInFlightCount());
+    }
+}
@@ -3,18 +3,19 @@ package com.udacity.catpoint.security.data;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.UUID;
 
 /**
  * FakeSecurityRepository written solely for integration testing purposes
  * A minor reflection of PretendDatabaseSecurityRepositoryImpl
+ * Safe to share between threads, like the repository it mirrors.
  */
 public class FakeSecurityRepository implements SecurityRepository {
-    private Set<Sensor> sensors = new TreeSet<>();
+    private final SensorRegistry sensorRegistry = new SensorRegistry();
 
-    private AlarmStatus alarmStatus;
+    private volatile AlarmStatus alarmStatus;
 
-    private ArmingStatus armingStatus;
+    private volatile ArmingStatus armingStatus;
 
     public FakeSecurityRepository() {
         // Pre-populate fields
@@ -22,26 +23,23 @@ public class FakeSecurityRepository implements SecurityRepository {
 
         armingStatus = ArmingStatus.DISARMED;
 
-        sensors.addAll(List.of(new Sensor("Door Sensor", SensorType.DOOR, false),
-                new Sensor("Grass Sensor", SensorType.MOTION, true)));
+        List.of(new Sensor("Door Sensor", SensorType.DOOR, false),
+                new Sensor("Grass Sensor", SensorType.MOTION, true)).forEach(this::addSensor);
     }
 
     @Override
     public void addSensor(Sensor sensor) {
-        Objects.requireNonNull(sensor);
-        sensors.add(sensor);
+        sensorRegistry.put(Objects.requireNonNull(sensor));
     }
 
     @Override
     public void removeSensor(Sensor sensor) {
-        sensors.remove(Objects.requireNonNull(sensor));
+        sensorRegistry.remove(Objects.requireNonNull(sensor));
     }
 
     @Override
     public void updateSensor(Sensor sensor) {
-        Objects.requireNonNull(sensor);
-        sensors.remove(sensor);
-        sensors.add(sensor);
+        sensorRegistry.put(Objects.requireNonNull(sensor));
     }
 
     @Override
@@ -56,7 +54,27 @@ public class FakeSecurityRepository implements SecurityRepository {
 
     @Override
     public Set<Sensor> getSensors() {
-        return this.sensors;
+        return sensorRegistry.getSnapshot().getSensors();
+    }
+
+    @Override
+    public Sensor getSensor(UUID sensorId) {
+        return sensorRegistry.get(sensorId);
+    }
+
+    @Override
+    public SensorSnapshot getSensorSnapshot() {
+        return sensorRegistry.getSnapshot();
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        return sensorRegistry.getActiveCount();
+    }
+
+    @Override
+    public int getActiveSensorCount(SensorType sensorType) {
+        return sensorRegistry.getActiveCount(sensorType);
     }
 
     @Override
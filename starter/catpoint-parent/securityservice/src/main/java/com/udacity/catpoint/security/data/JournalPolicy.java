@@ -0,0 +1,48 @@
+package com.udacity.catpoint.security.data;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Settings for {@link JournalSecurityRepository}. The journal is forced to disk once
+ * {@code syncEveryRecords} records have been appended or {@code syncInterval} has passed since
+ * the last force, whichever comes first. A zero interval therefore forces the journal on every
+ * append, whatever the record count, which is the safest and slowest setting. Once
+ * {@code compactAfterRecords} records have piled up behind the last snapshot, a new snapshot is
+ * written and the journal starts over.
+ */
+public class JournalPolicy {
+
+    public static final JournalPolicy DEFAULT = new JournalPolicy(64, Duration.ofMillis(200), 10_000);
+
+    private final int syncEveryRecords;
+    private final Duration syncInterval;
+    private final int compactAfterRecords;
+
+    public JournalPolicy(int syncEveryRecords, Duration syncInterval, int compactAfterRecords) {
+        if (syncEveryRecords < 1) {
+            throw new IllegalArgumentException("Sync batch must be at least 1 record");
+        }
+        if (syncInterval.isNegative()) {
+            throw new IllegalArgumentException("Sync interval must not be negative");
+        }
+        if (compactAfterRecords < 1) {
+            throw new IllegalArgumentException("Compaction threshold must be at least 1 record");
+        }
+        this.syncEveryRecords = syncEveryRecords;
+        this.syncInterval = Objects.requireNonNull(syncInterval);
+        this.compactAfterRecords = compactAfterRecords;
+    }
+
+    public int getSyncEveryRecords() {
+        return syncEveryRecords;
+    }
+
+    public Duration getSyncInterval() {
+        return syncInterval;
+    }
+
+    public int getCompactAfterRecords() {
+        return compactAfterRecords;
+    }
+}
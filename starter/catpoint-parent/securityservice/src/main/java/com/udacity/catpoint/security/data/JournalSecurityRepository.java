@@ -0,0 +1,629 @@
+package com.udacity.catpoint.security.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Repository that keeps its state in memory and persists every change as a small record appended
+ * to a journal file, instead of rewriting the whole state. On startup the last snapshot is loaded
+ * and the journal written after it is replayed on top.
+ * <p>
+ * Each journal record is framed as {@code [length][crc32][payload]}, so a record torn by a crash
+ * is detected and cut off on the next start. Sensors are written with {@link SensorCodec}.
+ * Snapshots and journals written with the fixed sensor layout used before it can still be read;
+ * the next compaction rewrites them.
+ * Records describe the resulting state, not a delta, which makes replaying a record twice
+ * harmless: a crash between writing a snapshot and truncating the journal only means a few
+ * records get applied again.
+ * <p>
+ * Compaction copies the state under the write lock and switches appends to a fresh journal, then
+ * writes and forces the snapshot without holding the lock, so changes keep flowing while it runs.
+ * The fresh journal takes the place of the old one once the snapshot is in place. A crash before
+ * that leaves both journals, which are replayed in order and merged on the next start.
+ * <p>
+ * How often the journal is forced to disk and when it is compacted into a new snapshot is set by
+ * a {@link JournalPolicy}. Call {@link #close()} to force and release the files.
+ */
+public class JournalSecurityRepository implements SecurityRepository, AutoCloseable {
+
+    private final Logger log = LoggerFactory.getLogger(JournalSecurityRepository.class);
+
+    static final String SNAPSHOT_FILE = "snapshot.bin";
+    static final String JOURNAL_FILE = "journal.bin";
+    static final String NEXT_JOURNAL_FILE = "journal.next";
+    private static final String SNAPSHOT_TEMP_FILE = "snapshot.tmp";
+
+    private static final int SNAPSHOT_MAGIC = 0x43505353; // "CPSS"
+    private static final byte SNAPSHOT_VERSION = 2;
+    private static final byte SNAPSHOT_VERSION_FIXED_SENSORS = 1;
+    private static final int FRAME_HEADER_BYTES = 8;
+
+    // journal record types
+    private static final byte PUT_SENSOR_V1 = 1; // fixed layout, only read
+    private static final byte REMOVE_SENSOR = 2;
+    private static final byte SET_ALARM_STATUS = 3;
+    private static final byte SET_ARMING_STATUS = 4;
+    private static final byte PUT_SENSOR = 5;
+
+    private final SensorRegistry sensorRegistry = new SensorRegistry();
+    private volatile AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private volatile ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    private final Path directory;
+    private final JournalPolicy policy;
+    private FileChannel journal;
+    private final ScheduledExecutorService background;
+    // held for a whole compaction, so only one runs at a time
+    private final ReentrantLock compactionLock = new ReentrantLock();
+
+    // guards the journal, the write buffer and the counters below; state changes are made under
+    // it too, so the journal order always matches the order the changes were applied in. A change
+    // is applied only once its record is written, so a closed or failing journal leaves the state
+    // as it was
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(16 * 1024);
+    private int unsyncedRecords;
+    private long lastSyncNanos = System.nanoTime();
+    private int recordsSinceSnapshot;
+    private final AtomicBoolean compactionRequested = new AtomicBoolean();
+    private boolean closed;
+
+    public JournalSecurityRepository(Path directory) throws IOException {
+        this(directory, JournalPolicy.DEFAULT);
+    }
+
+    /**
+     * Opens the journal in the given directory, creating it if needed, and restores the state
+     * stored there.
+     */
+    public JournalSecurityRepository(Path directory, JournalPolicy policy) throws IOException {
+        this.directory = directory;
+        this.policy = policy;
+        Files.createDirectories(directory);
+
+        Map<UUID, Sensor> restored = new LinkedHashMap<>();
+        loadSnapshot(restored);
+        journal = openJournal(JOURNAL_FILE);
+        recordsSinceSnapshot = replayJournal(journal, restored);
+        Path nextJournalFile = directory.resolve(NEXT_JOURNAL_FILE);
+        if (Files.exists(nextJournalFile)) {
+            // a compaction was interrupted; the records written while it ran come after the others
+            try (FileChannel nextJournal = openJournal(NEXT_JOURNAL_FILE)) {
+                recordsSinceSnapshot += replayJournal(nextJournal, restored);
+                appendJournal(nextJournal, journal);
+            }
+            journal.force(false);
+            Files.delete(nextJournalFile);
+        }
+
+        restored.values().forEach(sensorRegistry::put);
+
+        background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "security-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long syncMillis = policy.getSyncInterval().toMillis();
+        if (syncMillis > 0) {
+            background.scheduleWithFixedDelay(this::syncIfPending, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        writeLock.lock();
+        try {
+            appendRecords(List.of(sensor), PUT_SENSOR);
+            sensorRegistry.put(sensor);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        writeLock.lock();
+        try {
+            appendRecords(List.of(sensor), REMOVE_SENSOR);
+            sensorRegistry.remove(sensor);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void removeSensors(Collection<Sensor> removedSensors) {
+        writeLock.lock();
+        try {
+            appendRecords(removedSensors, REMOVE_SENSOR);
+            removedSensors.forEach(sensorRegistry::remove);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        updateSensors(List.of(sensor));
+    }
+
+    @Override
+    public void updateSensors(Collection<Sensor> changedSensors) {
+        writeLock.lock();
+        try {
+            appendRecords(changedSensors, PUT_SENSOR);
+            changedSensors.forEach(sensorRegistry::put);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        writeLock.lock();
+        try {
+            appendStatus(SET_ALARM_STATUS, alarmStatus.ordinal());
+            this.alarmStatus = alarmStatus;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        writeLock.lock();
+        try {
+            appendStatus(SET_ARMING_STATUS, armingStatus.ordinal());
+            this.armingStatus = armingStatus;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Encodes one record per sensor and writes them with a single channel write.
+     */
+    private void appendRecords(Collection<Sensor> recordSensors, byte recordType) {
+        writeBuffer.clear();
+        for (Sensor sensor : recordSensors) {
+            int frameStart = beginFrame();
+            writeBuffer.put(recordType);
+            if (recordType == PUT_SENSOR) {
+                putSensor(sensor);
+            } else {
+                putSensorId(sensor.getSensorId());
+            }
+            endFrame(frameStart);
+        }
+        writeFrames(recordSensors.size());
+    }
+
+    private void appendStatus(byte recordType, int ordinal) {
+        writeBuffer.clear();
+        int frameStart = beginFrame();
+        writeBuffer.put(recordType);
+        writeBuffer.put((byte) ordinal);
+        endFrame(frameStart);
+        writeFrames(1);
+    }
+
+    private int beginFrame() {
+        ensureCapacity(FRAME_HEADER_BYTES + 64);
+        int frameStart = writeBuffer.position();
+        writeBuffer.position(frameStart + FRAME_HEADER_BYTES);
+        return frameStart;
+    }
+
+    private void endFrame(int frameStart) {
+        int payloadStart = frameStart + FRAME_HEADER_BYTES;
+        int payloadEnd = writeBuffer.position();
+        crc.reset();
+        crc.update(writeBuffer.duplicate().position(payloadStart).limit(payloadEnd));
+        writeBuffer.putInt(frameStart, payloadEnd - payloadStart);
+        writeBuffer.putInt(frameStart + 4, (int) crc.getValue());
+    }
+
+    private void putSensorId(UUID sensorId) {
+        writeBuffer.putLong(sensorId.getMostSignificantBits());
+        writeBuffer.putLong(sensorId.getLeastSignificantBits());
+    }
+
+    private void putSensor(Sensor sensor) {
+        byte[] name = SensorCodec.encodeName(sensor);
+        ensureCapacity(SensorCodec.encodedSize(name));
+        SensorCodec.writeSensor(writeBuffer, sensor, name);
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (writeBuffer.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(writeBuffer.capacity() * 2, writeBuffer.position() + bytes));
+            writeBuffer.flip();
+            larger.put(writeBuffer);
+            writeBuffer = larger;
+        }
+    }
+
+    private void writeFrames(int records) {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        writeBuffer.flip();
+        try {
+            while (writeBuffer.hasRemaining()) {
+                journal.write(writeBuffer);
+            }
+            unsyncedRecords += records;
+            recordsSinceSnapshot += records;
+            if (unsyncedRecords >= policy.getSyncEveryRecords()
+                    || System.nanoTime() - lastSyncNanos >= policy.getSyncInterval().toNanos()) {
+                forceJournal();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to append to the security journal", e);
+        }
+        if (recordsSinceSnapshot >= policy.getCompactAfterRecords() && compactionRequested.compareAndSet(false, true)) {
+            try {
+                background.execute(this::compactQuietly);
+            } catch (RejectedExecutionException e) {
+                compactionRequested.set(false);
+            }
+        }
+    }
+
+    private void forceJournal() throws IOException {
+        journal.force(false);
+        unsyncedRecords = 0;
+        lastSyncNanos = System.nanoTime();
+    }
+
+    private void syncIfPending() {
+        writeLock.lock();
+        try {
+            if (unsyncedRecords > 0 && !closed) {
+                forceJournal();
+            }
+        } catch (IOException e) {
+            log.error("Unable to sync the security journal", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Forces every appended record to disk.
+     */
+    public void sync() throws IOException {
+        writeLock.lock();
+        try {
+            forceJournal();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException e) {
+            log.error("Unable to compact the security journal", e);
+        }
+    }
+
+    /**
+     * Writes the current state as a new snapshot and empties the journal. The snapshot replaces
+     * the old one with an atomic move, so a crash leaves either the old or the new snapshot. Only
+     * copying the state and switching journals happen under the write lock; the snapshot is
+     * written and forced outside it.
+     */
+    public void compact() throws IOException {
+        compactionLock.lock();
+        try {
+            ByteBuffer snapshot;
+            FileChannel retiredJournal;
+            int retiredRecords;
+            writeLock.lock();
+            try {
+                compactionRequested.set(false);
+                if (closed) {
+                    return;
+                }
+                snapshot = encodeSnapshot();
+                forceJournal();
+                retiredJournal = journal;
+                journal = openJournal(NEXT_JOURNAL_FILE);
+                journal.truncate(0);
+                retiredRecords = recordsSinceSnapshot;
+                recordsSinceSnapshot = 0;
+            } finally {
+                writeLock.unlock();
+            }
+
+            boolean written = false;
+            try {
+                writeSnapshot(snapshot);
+                written = true;
+            } finally {
+                writeLock.lock();
+                try {
+                    swapJournals(retiredJournal, retiredRecords, written);
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Encodes the state into a buffer of its own, as appends keep using the write buffer while
+     * the snapshot is written. Names are encoded once and the buffer sized from them, as a sensor
+     * can be renamed meanwhile.
+     */
+    private ByteBuffer encodeSnapshot() {
+        List<Sensor> sensors = new ArrayList<>(sensorRegistry.getSensors());
+        List<byte[]> names = new ArrayList<>(sensors.size());
+        int size = 15;
+        for (Sensor sensor : sensors) {
+            byte[] name = SensorCodec.encodeName(sensor);
+            names.add(name);
+            size += SensorCodec.encodedSize(name);
+        }
+        ByteBuffer snapshot = ByteBuffer.allocate(size);
+        snapshot.putInt(SNAPSHOT_MAGIC);
+        snapshot.put(SNAPSHOT_VERSION);
+        snapshot.put((byte) alarmStatus.ordinal());
+        snapshot.put((byte) armingStatus.ordinal());
+        snapshot.putInt(sensors.size());
+        for (int i = 0; i < sensors.size(); i++) {
+            SensorCodec.writeSensor(snapshot, sensors.get(i), names.get(i));
+        }
+        CRC32 snapshotCrc = new CRC32();
+        snapshotCrc.update(snapshot.duplicate().flip());
+        snapshot.putInt((int) snapshotCrc.getValue());
+        return snapshot.flip();
+    }
+
+    private void writeSnapshot(ByteBuffer snapshot) throws IOException {
+        Path temp = directory.resolve(SNAPSHOT_TEMP_FILE);
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (snapshot.hasRemaining()) {
+                out.write(snapshot);
+            }
+            out.force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Ends a compaction. Once the snapshot is in place the fresh journal becomes the journal;
+     * if it could not be written, the records appended meanwhile go back onto the old journal,
+     * which the old snapshot still needs.
+     */
+    private void swapJournals(FileChannel retiredJournal, int retiredRecords, boolean snapshotWritten) throws IOException {
+        Path nextJournalFile = directory.resolve(NEXT_JOURNAL_FILE);
+        if (snapshotWritten) {
+            retiredJournal.close();
+            journal.close();
+            Files.move(nextJournalFile, directory.resolve(JOURNAL_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal = openJournal(JOURNAL_FILE);
+            journal.position(journal.size());
+            return;
+        }
+        appendJournal(journal, retiredJournal);
+        retiredJournal.force(false);
+        journal.close();
+        Files.delete(nextJournalFile);
+        journal = retiredJournal;
+        recordsSinceSnapshot += retiredRecords;
+    }
+
+    private FileChannel openJournal(String fileName) throws IOException {
+        return FileChannel.open(directory.resolve(fileName),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Copies the records of one journal onto the end of another. Torn records must have been cut
+     * off already.
+     */
+    private static void appendJournal(FileChannel from, FileChannel to) throws IOException {
+        long length = from.size();
+        long copied = 0;
+        to.position(to.size());
+        while (copied < length) {
+            copied += from.transferTo(copied, length - copied, to);
+        }
+    }
+
+    private void loadSnapshot(Map<UUID, Sensor> restored) throws IOException {
+        Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshotFile)) {
+            return;
+        }
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(snapshotFile));
+        if (in.remaining() < 15 || in.getInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a security snapshot: " + snapshotFile);
+        }
+        byte version = in.get();
+        if (version != SNAPSHOT_VERSION && version != SNAPSHOT_VERSION_FIXED_SENSORS) {
+            throw new IOException("Unsupported security snapshot version " + version);
+        }
+        crc.reset();
+        crc.update(in.duplicate().position(0).limit(in.limit() - 4));
+        if ((int) crc.getValue() != in.getInt(in.limit() - 4)) {
+            throw new IOException("Security snapshot is corrupt: " + snapshotFile);
+        }
+        alarmStatus = AlarmStatus.values()[in.get()];
+        armingStatus = ArmingStatus.values()[in.get()];
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            Sensor sensor = version == SNAPSHOT_VERSION ? SensorCodec.readSensor(in) : readFixedSensor(in);
+            restored.put(sensor.getSensorId(), sensor);
+        }
+    }
+
+    /**
+     * Applies every intact record in the journal and leaves it positioned after the last one.
+     * Anything after the first short or corrupt frame is the remains of an interrupted write and
+     * is cut off.
+     *
+     * @return the number of records applied
+     */
+    private int replayJournal(FileChannel journal, Map<UUID, Sensor> restored) throws IOException {
+        long size = journal.size();
+        ByteBuffer in = ByteBuffer.allocate((int) size);
+        while (in.hasRemaining() && journal.read(in, in.position()) >= 0) {
+            // keep reading until the buffer is full
+        }
+        in.flip();
+        int validEnd = 0;
+        int records = 0;
+        while (in.remaining() >= FRAME_HEADER_BYTES) {
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if (length <= 0 || length > in.remaining()) {
+                break;
+            }
+            ByteBuffer payload = in.slice().limit(length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            applyRecord(payload, restored);
+            in.position(in.position() + length);
+            validEnd = in.position();
+            records++;
+        }
+        if (validEnd < size) {
+            log.warn("Discarding {} bytes of incomplete security journal records", size - validEnd);
+            journal.truncate(validEnd);
+        }
+        journal.position(validEnd);
+        return records;
+    }
+
+    private void applyRecord(ByteBuffer payload, Map<UUID, Sensor> restored) {
+        byte recordType = payload.get();
+        switch (recordType) {
+            case PUT_SENSOR -> {
+                Sensor sensor = SensorCodec.readSensor(payload);
+                restored.put(sensor.getSensorId(), sensor);
+            }
+            case PUT_SENSOR_V1 -> {
+                Sensor sensor = readFixedSensor(payload);
+                restored.put(sensor.getSensorId(), sensor);
+            }
+            case REMOVE_SENSOR -> restored.remove(new UUID(payload.getLong(), payload.getLong()));
+            case SET_ALARM_STATUS -> alarmStatus = AlarmStatus.values()[payload.get()];
+            case SET_ARMING_STATUS -> armingStatus = ArmingStatus.values()[payload.get()];
+            default -> throw new IllegalStateException("Unknown security journal record type " + recordType);
+        }
+    }
+
+    /**
+     * Reads a sensor in the layout written before {@link SensorCodec}: id, type ordinal, active
+     * flag and a length-prefixed name.
+     */
+    private static Sensor readFixedSensor(ByteBuffer in) {
+        UUID sensorId = new UUID(in.getLong(), in.getLong());
+        SensorType sensorType = SensorType.values()[in.get()];
+        boolean active = in.get() != 0;
+        byte[] name = new byte[in.getShort() & 0xFFFF];
+        in.get(name);
+        Sensor sensor = new Sensor(new String(name, StandardCharsets.UTF_8), sensorType, active);
+        sensor.setSensorId(sensorId);
+        return sensor;
+    }
+
+    /**
+     * Waits for a running compaction, then forces outstanding records to disk and closes the
+     * journal.
+     */
+    @Override
+    public void close() throws IOException {
+        background.shutdown();
+        compactionLock.lock();
+        writeLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            forceJournal();
+            closed = true;
+            journal.close();
+        } finally {
+            writeLock.unlock();
+            compactionLock.unlock();
+        }
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return sensorRegistry.getSnapshot().getSensors();
+    }
+
+    @Override
+    public Sensor getSensor(UUID sensorId) {
+        return sensorRegistry.get(sensorId);
+    }
+
+    @Override
+    public SensorSnapshot getSensorSnapshot() {
+        return sensorRegistry.getSnapshot();
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        return sensorRegistry.getActiveCount();
+    }
+
+    @Override
+    public int getActiveSensorCount(SensorType sensorType) {
+        return sensorRegistry.getActiveCount(sensorType);
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    @Override
+    public ArmingStatus getOldArmingStatus() {
+        return this.armingStatus;
+    }
+}
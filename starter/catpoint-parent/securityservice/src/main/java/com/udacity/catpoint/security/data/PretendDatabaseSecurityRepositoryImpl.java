@@ -1,88 +1,336 @@
 package com.udacity.catpoint.security.data;
 
-import com.google.common.reflect.TypeToken;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Type;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
 /**
  * Fake repository implementation for demo purposes. Stores state information in local
  * memory and writes it to user preferences between app loads. This implementation is
  * intentionally a little hard to use in unit tests, so watch out!
+ * <p>
+ * State is kept in concurrent collections and volatile fields so the repository can be fed
+ * from several threads. Sensor writes to the preferences store are serialized so an older
+ * copy of the sensor set can never overwrite a newer one.
+ * <p>
+ * By default every change is written to the preferences store right away. With a
+ * {@link WriteBehindPolicy} changes only mark the state dirty and a background thread writes
+ * them, so sensor events never wait for serialization or the store. Pending changes are
+ * written on {@link #flush()}, on {@link #close()} and when the JVM shuts down. A background
+ * write that fails is logged and retried with the next one.
+ * <p>
+ * A closed repository can still be read but rejects changes, since nothing would write them.
  */
-public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository {
+public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository, AutoCloseable {
 
-    private Set<Sensor> sensors;
-    private AlarmStatus alarmStatus;
-    private ArmingStatus armingStatus;
+    private final Logger log = LoggerFactory.getLogger(PretendDatabaseSecurityRepositoryImpl.class);
+
+    private final SensorRegistry sensorRegistry = new SensorRegistry();
+    private volatile AlarmStatus alarmStatus;
+    private volatile ArmingStatus armingStatus;
 
     //preference keys
-    private static final String SENSORS = "SENSORS";
+    private static final String SENSORS = "SENSORS"; // JSON written by earlier versions
+    private static final String SENSOR_DATA = "SENSOR_DATA";
+    private static final String SENSOR_DATA_CHUNKS = "SENSOR_DATA_CHUNKS";
+    private static final int SENSOR_DATA_CHUNK_BYTES = Preferences.MAX_VALUE_LENGTH * 3 / 4;
     private static final String ALARM_STATUS = "ALARM_STATUS";
     private static final String ARMING_STATUS = "ARMING_STATUS";
 
-    private static final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
-    private static final Gson gson = new Gson(); //used to serialize objects into JSON
+    private final Preferences prefs;
+
+    // write-behind state, unused when every change is written right away
+    private final WriteBehindPolicy writeBehindPolicy;
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean sensorsDirty = new AtomicBoolean();
+    private final AtomicBoolean alarmStatusDirty = new AtomicBoolean();
+    private final AtomicBoolean armingStatusDirty = new AtomicBoolean();
+    private final AtomicInteger dirtyChanges = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Thread shutdownFlush;
+    private volatile boolean closed;
 
     public PretendDatabaseSecurityRepositoryImpl() {
+        this(null);
+    }
+
+    /**
+     * @param writeBehindPolicy how to batch writes to the preferences store, or null to write
+     *                          every change right away
+     */
+    public PretendDatabaseSecurityRepositoryImpl(WriteBehindPolicy writeBehindPolicy) {
+        this(writeBehindPolicy, Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class));
+    }
+
+    PretendDatabaseSecurityRepositoryImpl(WriteBehindPolicy writeBehindPolicy, Preferences prefs) {
+        this.writeBehindPolicy = writeBehindPolicy;
+        this.prefs = prefs;
         //load system state from prefs, or else default
         alarmStatus = AlarmStatus.valueOf(prefs.get(ALARM_STATUS, AlarmStatus.NO_ALARM.toString()));
         armingStatus = ArmingStatus.valueOf(prefs.get(ARMING_STATUS, ArmingStatus.DISARMED.toString()));
 
         //we've serialized our sensor objects for storage, which should be a good warning sign that
         // this is likely an impractical solution for a real system
-        String sensorString = prefs.get(SENSORS, null);
-        if (sensorString == null) {
-            sensors = new TreeSet<>();
-        } else {
-            Type type = new TypeToken<Set<Sensor>>() {
-            }.getType();
+        List<Sensor> storedSensors = readSensors();
+        storedSensors.forEach(sensorRegistry::put);
 
-            Gson nGson = new GsonBuilder()
-                    .registerTypeAdapter(Sensor.class, new Sensor.SensorDeserializer()).create();
-
-            sensors = nGson.fromJson(sensorString, type);
+        if (writeBehindPolicy == null) {
+            flusher = null;
+            shutdownFlush = null;
+        } else {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "security-repository-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMillis = writeBehindPolicy.getFlushInterval().toMillis();
+            flusher.scheduleWithFixedDelay(this::writeInBackground, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+            shutdownFlush = new Thread(this::flush, "security-repository-shutdown-flush");
+            Runtime.getRuntime().addShutdownHook(shutdownFlush);
         }
     }
 
     @Override
     public void addSensor(Sensor sensor) {
-        sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        checkOpen();
+        sensorRegistry.put(sensor);
+        persistSensors();
     }
 
     @Override
     public void removeSensor(Sensor sensor) {
-        sensors.remove(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        checkOpen();
+        sensorRegistry.remove(sensor);
+        persistSensors();
+    }
+
+    @Override
+    public void removeSensors(Collection<Sensor> removedSensors) {
+        checkOpen();
+        removedSensors.forEach(sensorRegistry::remove);
+        persistSensors();
     }
 
     @Override
     public void updateSensor(Sensor sensor) {
-        sensors.remove(sensor);
-        sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        checkOpen();
+        sensorRegistry.put(sensor);
+        persistSensors();
+    }
+
+    @Override
+    public void updateSensors(Collection<Sensor> changedSensors) {
+        checkOpen();
+        changedSensors.forEach(sensorRegistry::put);
+        persistSensors();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Security repository is closed");
+        }
+    }
+
+    private void persistSensors() {
+        if (writeBehindPolicy == null) {
+            writeSensors();
+        } else {
+            markDirty(sensorsDirty);
+        }
+    }
+
+    /**
+     * Serializes the current sensor set into the preferences store. Serializing inside the lock
+     * means the last writer always stores a view that includes every earlier change. The encoded
+     * set is split over several keys because a single preference value is limited in size.
+     */
+    private synchronized void writeSensors() {
+        byte[] encoded = SensorCodec.encode(sensorRegistry.getSensors());
+        int chunks = Math.max(1, (encoded.length + SENSOR_DATA_CHUNK_BYTES - 1) / SENSOR_DATA_CHUNK_BYTES);
+        int previousChunks = prefs.getInt(SENSOR_DATA_CHUNKS, 0);
+        for (int i = 0; i < chunks; i++) {
+            int from = i * SENSOR_DATA_CHUNK_BYTES;
+            prefs.putByteArray(SENSOR_DATA + i,
+                    Arrays.copyOfRange(encoded, from, Math.min(encoded.length, from + SENSOR_DATA_CHUNK_BYTES)));
+        }
+        prefs.putInt(SENSOR_DATA_CHUNKS, chunks);
+        for (int i = chunks; i < previousChunks; i++) {
+            prefs.remove(SENSOR_DATA + i);
+        }
+    }
+
+    /**
+     * Reads the stored sensor set. Sensors stored as JSON by earlier versions are imported and
+     * written back in the binary form.
+     */
+    private List<Sensor> readSensors() {
+        int chunks = prefs.getInt(SENSOR_DATA_CHUNKS, 0);
+        if (chunks == 0) {
+            String json = prefs.get(SENSORS, null);
+            if (json == null) {
+                return List.of();
+            }
+            List<Sensor> imported = SensorCodec.fromJson(json);
+            prefs.putByteArray(SENSOR_DATA + 0, SensorCodec.encode(imported));
+            prefs.putInt(SENSOR_DATA_CHUNKS, 1);
+            prefs.remove(SENSORS);
+            return imported;
+        }
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        for (int i = 0; i < chunks; i++) {
+            encoded.writeBytes(prefs.getByteArray(SENSOR_DATA + i, new byte[0]));
+        }
+        return SensorCodec.decode(encoded.toByteArray());
     }
 
     @Override
     public void setAlarmStatus(AlarmStatus alarmStatus) {
+        checkOpen();
         this.alarmStatus = alarmStatus;
-        prefs.put(ALARM_STATUS, this.alarmStatus.toString());
+        if (writeBehindPolicy == null) {
+            prefs.put(ALARM_STATUS, this.alarmStatus.toString());
+        } else {
+            markDirty(alarmStatusDirty);
+        }
     }
 
     @Override
     public void setArmingStatus(ArmingStatus armingStatus) {
+        checkOpen();
         this.armingStatus = armingStatus;
-        prefs.put(ARMING_STATUS, this.armingStatus.toString());
+        if (writeBehindPolicy == null) {
+            prefs.put(ARMING_STATUS, this.armingStatus.toString());
+        } else {
+            markDirty(armingStatusDirty);
+        }
+    }
+
+    /**
+     * Records a change for the next background write. Once enough changes have piled up a write
+     * is handed to the flusher thread; the caller never writes itself.
+     */
+    private void markDirty(AtomicBoolean dirtyFlag) {
+        dirtyFlag.set(true);
+        if (closed) {
+            // close() ran after this change was accepted and may have flushed without it
+            writePendingChanges();
+            return;
+        }
+        if (dirtyChanges.incrementAndGet() >= writeBehindPolicy.getMaxDirtyChanges()
+                && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::writeInBackground);
+            } catch (RejectedExecutionException e) {
+                // close() started after the check above, so its flush writes this change
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    /**
+     * Writes pending changes on the flusher thread. A failure must not escape, as it would stop
+     * the periodic writes for good; the changes stay dirty and the next write tries again.
+     */
+    private void writeInBackground() {
+        try {
+            writePendingChanges();
+        } catch (RuntimeException e) {
+            log.error("Unable to write security state to the preferences store, will retry", e);
+        }
+    }
+
+    /**
+     * Writes whatever has changed since the last write. Flags are cleared before writing, so a
+     * change that lands during the write is picked up by the next one, and set again if the
+     * write fails.
+     */
+    private synchronized void writePendingChanges() {
+        flushRequested.set(false);
+        dirtyChanges.set(0);
+        writeIfDirty(sensorsDirty, this::writeSensors);
+        writeIfDirty(alarmStatusDirty, () -> prefs.put(ALARM_STATUS, alarmStatus.toString()));
+        writeIfDirty(armingStatusDirty, () -> prefs.put(ARMING_STATUS, armingStatus.toString()));
+    }
+
+    private static void writeIfDirty(AtomicBoolean dirtyFlag, Runnable write) {
+        if (dirtyFlag.getAndSet(false)) {
+            try {
+                write.run();
+            } catch (RuntimeException e) {
+                dirtyFlag.set(true);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Writes any pending changes and asks the preferences store to make them durable. Use this
+     * at points where losing recent changes is not acceptable.
+     */
+    public void flush() {
+        writePendingChanges();
+        try {
+            prefs.flush();
+        } catch (BackingStoreException e) {
+            log.error("Unable to flush security state to the preferences store", e);
+        }
+    }
+
+    /**
+     * Stops the background writer and writes any pending changes. After this the repository
+     * rejects changes and no longer flushes when the JVM shuts down.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownFlush);
+            } catch (IllegalStateException e) {
+                // closed from a shutdown hook, the JVM is already running ours
+            }
+        }
+        flush();
     }
 
     @Override
     public Set<Sensor> getSensors() {
-        return sensors;
+        return sensorRegistry.getSnapshot().getSensors();
+    }
+
+    @Override
+    public Sensor getSensor(UUID sensorId) {
+        return sensorRegistry.get(sensorId);
+    }
+
+    @Override
+    public SensorSnapshot getSensorSnapshot() {
+        return sensorRegistry.getSnapshot();
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        return sensorRegistry.getActiveCount();
+    }
+
+    @Override
+    public int getActiveSensorCount(SensorType sensorType) {
+        return sensorRegistry.getActiveCount(sensorType);
     }
 
     @Override
@@ -1,5 +1,7 @@
 package com.udacity.catpoint.security.data;
+import java.util.Collection;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * Interface showing the methods our security repository will need to support
@@ -8,12 +10,53 @@ public interface SecurityRepository {
     void addSensor(Sensor sensor);
     void removeSensor(Sensor sensor);
     void updateSensor(Sensor sensor);
+
+    /**
+     * Stores several changed sensors at once. Implementations that persist their state should
+     * override this to write once for the whole batch.
+     */
+    default void updateSensors(Collection<Sensor> sensors) {
+        sensors.forEach(this::updateSensor);
+    }
+
+    /**
+     * Removes several sensors at once. Implementations that persist their state should override
+     * this to write once for the whole batch.
+     */
+    default void removeSensors(Collection<Sensor> sensors) {
+        sensors.forEach(this::removeSensor);
+    }
+
     void setAlarmStatus(AlarmStatus alarmStatus);
     void setArmingStatus(ArmingStatus armingStatus);
+    /**
+     * @return the sensors of the current snapshot, in sensor order. The set is immutable and is
+     * only rebuilt when sensors are added, removed or renamed, so callers don't need to copy it.
+     */
     Set<Sensor> getSensors();
+
+    /**
+     * @return the sensor with the given id, or null if there is none
+     */
+    Sensor getSensor(UUID sensorId);
+
+    /**
+     * @return the current versioned snapshot of the sensor set
+     */
+    SensorSnapshot getSensorSnapshot();
     AlarmStatus getAlarmStatus();
     ArmingStatus getArmingStatus();
 
+    /**
+     * @return the number of active sensors, kept up to date as sensors are added, removed and updated
+     */
+    int getActiveSensorCount();
+
+    /**
+     * @return the number of active sensors of the given type
+     */
+    int getActiveSensorCount(SensorType sensorType);
+
     // For testing purposes
     ArmingStatus getOldArmingStatus();
 
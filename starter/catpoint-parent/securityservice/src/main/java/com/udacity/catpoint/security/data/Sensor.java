@@ -90,7 +90,7 @@ public class Sensor implements Comparable<Sensor> {
         public Sensor deserialize(JsonElement jsonElement, Type type, JsonDeserializationContext jsonDeserializationContext) throws JsonParseException {
             JsonObject jsonObject = jsonElement.getAsJsonObject();
 
-            String sensorId = jsonObject.remove("sensorId").getAsString();
+            String sensorId = jsonObject.get("sensorId").getAsString();
             UUID uuid = UUID.fromString(sensorId);
 
             Sensor sensor = new Sensor(
@@ -0,0 +1,25 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.Objects;
+
+/**
+ * A requested change to the activation status of one sensor. Used to hand several
+ * changes to the SecurityService at once, for example a burst from a multi-sensor panel.
+ */
+public class SensorActivation {
+    private final Sensor sensor;
+    private final boolean active;
+
+    public SensorActivation(Sensor sensor, boolean active) {
+        this.sensor = Objects.requireNonNull(sensor);
+        this.active = active;
+    }
+
+    public Sensor getSensor() {
+        return sensor;
+    }
+
+    public boolean getActive() {
+        return active;
+    }
+}
@@ -0,0 +1,230 @@
+package com.udacity.catpoint.security.data;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.lang.reflect.Type;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of sensors, used by the repositories instead of Gson.
+ * <p>
+ * A sensor is its id as two longs, one byte holding the type ordinal and the active flag, and
+ * its name. A sensor set starts with a magic number and a format version, followed by a table of
+ * the distinct names and then the sensors, which refer to their name by index. Decoded names are
+ * interned, so sensors that share a name share the string too.
+ * <p>
+ * The JSON form written by earlier versions can still be read and written with
+ * {@link #fromJson(String)} and {@link #toJson(Collection)}, for migrating stored data.
+ */
+public final class SensorCodec {
+
+    private static final int MAGIC = 0x43505345; // "CPSE"
+    private static final byte VERSION = 1;
+    private static final int ACTIVE_BIT = 0x80;
+
+    private static final Interner<String> NAMES = Interners.newWeakInterner();
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+
+    private static final Gson JSON = new GsonBuilder()
+            .registerTypeAdapter(Sensor.class, new Sensor.SensorDeserializer()).create();
+    private static final Type SENSOR_LIST = new TypeToken<List<Sensor>>() {
+    }.getType();
+
+    private SensorCodec() {
+    }
+
+    /**
+     * Encodes a set of sensors in the current format version. The collection may be a live view
+     * that changes meanwhile; it is read once.
+     */
+    public static byte[] encode(Collection<Sensor> liveSensors) {
+        List<Sensor> sensors = new ArrayList<>(liveSensors);
+        Map<String, Integer> nameIndexes = new HashMap<>();
+        List<byte[]> names = new ArrayList<>();
+        // each name is read once, so a rename meanwhile cannot leave a sensor without a name entry
+        int[] sensorNames = new int[sensors.size()];
+        int size = 4 + 1 + 4 + 4;
+        for (int i = 0; i < sensorNames.length; i++) {
+            String sensorName = sensors.get(i).getName();
+            Integer index = nameIndexes.get(sensorName);
+            if (index == null) {
+                byte[] name = sensorName.getBytes(StandardCharsets.UTF_8);
+                index = names.size();
+                nameIndexes.put(sensorName, index);
+                names.add(name);
+                size += 5 + name.length;
+            }
+            sensorNames[i] = index;
+            size += 16 + 1 + 5;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC);
+        out.put(VERSION);
+        out.putInt(names.size());
+        for (byte[] name : names) {
+            putVarInt(out, name.length);
+            out.put(name);
+        }
+        out.putInt(sensors.size());
+        for (int i = 0; i < sensorNames.length; i++) {
+            putIdAndFlags(out, sensors.get(i));
+            putVarInt(out, sensorNames[i]);
+        }
+        byte[] encoded = new byte[out.position()];
+        out.flip().get(encoded);
+        return encoded;
+    }
+
+    /**
+     * Decodes a set written by {@link #encode(Collection)}.
+     *
+     * @throws IllegalArgumentException if the data is not an encoded sensor set or was written by
+     *                                  an unknown format version
+     */
+    public static List<Sensor> decode(byte[] encoded) {
+        ByteBuffer in = ByteBuffer.wrap(encoded);
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not an encoded sensor set");
+            }
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported sensor set version " + version);
+            }
+            String[] names = new String[in.getInt()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = getName(in, getVarInt(in));
+            }
+            int count = in.getInt();
+            List<Sensor> sensors = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                UUID sensorId = new UUID(in.getLong(), in.getLong());
+                int flags = in.get() & 0xFF;
+                sensors.add(newSensor(sensorId, flags, names[getVarInt(in)]));
+            }
+            return sensors;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Encoded sensor set is truncated or corrupt", e);
+        }
+    }
+
+    /**
+     * @return the most bytes {@link #writeSensor(ByteBuffer, Sensor)} can take for this sensor
+     */
+    public static int maxEncodedSize(Sensor sensor) {
+        return 16 + 1 + 5 + sensor.getName().length() * 3;
+    }
+
+    /**
+     * Writes a single sensor, with its name inline, at the buffer's position.
+     */
+    public static void writeSensor(ByteBuffer out, Sensor sensor) {
+        writeSensor(out, sensor, encodeName(sensor));
+    }
+
+    /**
+     * @return the sensor's name as {@link #writeSensor(ByteBuffer, Sensor, byte[])} writes it
+     */
+    public static byte[] encodeName(Sensor sensor) {
+        return sensor.getName().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the most bytes {@link #writeSensor(ByteBuffer, Sensor, byte[])} takes with this name
+     */
+    public static int encodedSize(byte[] name) {
+        return 16 + 1 + 5 + name.length;
+    }
+
+    /**
+     * Writes a single sensor with a name encoded beforehand, so a buffer sized for that name
+     * cannot overflow if the sensor is renamed meanwhile.
+     */
+    public static void writeSensor(ByteBuffer out, Sensor sensor, byte[] name) {
+        putIdAndFlags(out, sensor);
+        putVarInt(out, name.length);
+        out.put(name);
+    }
+
+    /**
+     * Reads a single sensor written by {@link #writeSensor(ByteBuffer, Sensor)}.
+     */
+    public static Sensor readSensor(ByteBuffer in) {
+        UUID sensorId = new UUID(in.getLong(), in.getLong());
+        int flags = in.get() & 0xFF;
+        return newSensor(sensorId, flags, getName(in, getVarInt(in)));
+    }
+
+    /**
+     * Reads sensors from the JSON form earlier versions stored.
+     */
+    public static List<Sensor> fromJson(String json) {
+        List<Sensor> sensors = JSON.fromJson(json, SENSOR_LIST);
+        return sensors == null ? List.of() : sensors;
+    }
+
+    /**
+     * Writes sensors in the JSON form earlier versions stored.
+     */
+    public static String toJson(Collection<Sensor> sensors) {
+        return JSON.toJson(sensors);
+    }
+
+    private static void putIdAndFlags(ByteBuffer out, Sensor sensor) {
+        out.putLong(sensor.getSensorId().getMostSignificantBits());
+        out.putLong(sensor.getSensorId().getLeastSignificantBits());
+        out.put((byte) (sensor.getSensorType().ordinal() | (sensor.getActive() ? ACTIVE_BIT : 0)));
+    }
+
+    private static Sensor newSensor(UUID sensorId, int flags, String name) {
+        Sensor sensor = new Sensor(name, SENSOR_TYPES[flags & ~ACTIVE_BIT], (flags & ACTIVE_BIT) != 0);
+        sensor.setSensorId(sensorId);
+        return sensor;
+    }
+
+    private static String getName(ByteBuffer in, int length) {
+        String name;
+        if (in.hasArray()) {
+            name = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            name = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return NAMES.intern(name);
+    }
+
+    private static void putVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static int getVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed length in encoded sensor data");
+    }
+}
@@ -0,0 +1,161 @@
+package com.udacity.catpoint.security.data;
+
+import com.google.common.collect.Collections2;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sensor storage for the repositories, keyed by sensor id so lookup, update and removal don't
+ * depend on the number of sensors or on comparing names. Secondary indexes by SensorType and by
+ * active state answer "which sensors of this type?" and "how many are active?" without a scan,
+ * and a sorted {@link SensorSnapshot} serves as the ordered view for display.
+ * <p>
+ * Sensor objects are shared and changed in place before they reach the repository, so the
+ * registry remembers the type, state and name it last indexed each sensor under instead of
+ * trusting the sensor's previous values. The ordered view is only rebuilt when a change can move
+ * a sensor within it: an added or removed sensor, or a new name or type, so a renamed sensor must
+ * be passed to {@link #put} to move; until then snapshots keep it where its old name sorted. Every
+ * method is safe to call from several threads; changes to the same sensor are applied one at a
+ * time.
+ */
+public class SensorRegistry {
+
+    /**
+     * What a sensor was last indexed under.
+     */
+    private static final class Entry {
+        private final Sensor sensor;
+        private final String name;
+        private final SensorType sensorType;
+        private final boolean active;
+
+        private Entry(Sensor sensor) {
+            this.sensor = sensor;
+            this.name = sensor.getName();
+            this.sensorType = sensor.getSensorType();
+            this.active = sensor.getActive();
+        }
+    }
+
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<SensorType, Set<Sensor>> byType = new EnumMap<>(SensorType.class);
+    private final Map<SensorType, Set<Sensor>> activeByType = new EnumMap<>(SensorType.class);
+    private final Set<Sensor> active = ConcurrentHashMap.newKeySet();
+    private final Collection<Sensor> sensorsView = Collections2.transform(entries.values(), entry -> entry.sensor);
+    private final SensorSnapshotPublisher snapshotPublisher = new SensorSnapshotPublisher(sensorsView);
+
+    public SensorRegistry() {
+        for (SensorType sensorType : SensorType.values()) {
+            byType.put(sensorType, ConcurrentHashMap.newKeySet());
+            activeByType.put(sensorType, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /**
+     * Adds a sensor, or records the current state of one that is already registered.
+     */
+    public void put(Sensor sensor) {
+        Objects.requireNonNull(sensor);
+        boolean[] reordered = new boolean[1];
+        entries.compute(sensor.getSensorId(), (id, previous) -> {
+            Entry current = new Entry(sensor);
+            if (previous != null) {
+                unindex(previous);
+            }
+            index(current);
+            reordered[0] = previous == null || previous.sensor != sensor
+                    || !previous.name.equals(current.name) || previous.sensorType != current.sensorType;
+            return current;
+        });
+        // only after the map holds the new entry, so a rebuilt snapshot is sure to include it
+        if (reordered[0]) {
+            snapshotPublisher.changed();
+        }
+    }
+
+    /**
+     * Removes the sensor with the same id, if registered.
+     */
+    public void remove(Sensor sensor) {
+        boolean[] removed = new boolean[1];
+        entries.computeIfPresent(sensor.getSensorId(), (id, previous) -> {
+            unindex(previous);
+            removed[0] = true;
+            return null;
+        });
+        if (removed[0]) {
+            snapshotPublisher.changed();
+        }
+    }
+
+    private void index(Entry entry) {
+        byType.get(entry.sensorType).add(entry.sensor);
+        if (entry.active) {
+            active.add(entry.sensor);
+            activeByType.get(entry.sensorType).add(entry.sensor);
+        }
+    }
+
+    private void unindex(Entry entry) {
+        byType.get(entry.sensorType).remove(entry.sensor);
+        if (entry.active) {
+            active.remove(entry.sensor);
+            activeByType.get(entry.sensorType).remove(entry.sensor);
+        }
+    }
+
+    /**
+     * @return the registered sensor with this id, or null if there is none
+     */
+    public Sensor get(UUID sensorId) {
+        Entry entry = entries.get(sensorId);
+        return entry == null ? null : entry.sensor;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return a live, unordered view of every registered sensor
+     */
+    public Collection<Sensor> getSensors() {
+        return sensorsView;
+    }
+
+    /**
+     * @return a live view of the sensors of the given type
+     */
+    public Set<Sensor> getSensors(SensorType sensorType) {
+        return Collections.unmodifiableSet(byType.get(sensorType));
+    }
+
+    /**
+     * @return a live view of the active sensors
+     */
+    public Set<Sensor> getActiveSensors() {
+        return Collections.unmodifiableSet(active);
+    }
+
+    public int getActiveCount() {
+        return active.size();
+    }
+
+    public int getActiveCount(SensorType sensorType) {
+        return activeByType.get(sensorType).size();
+    }
+
+    /**
+     * @return the sensors in display order
+     */
+    public SensorSnapshot getSnapshot() {
+        return snapshotPublisher.get();
+    }
+}
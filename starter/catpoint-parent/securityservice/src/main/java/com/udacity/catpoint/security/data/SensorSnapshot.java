@@ -0,0 +1,36 @@
+package com.udacity.catpoint.security.data;
+
+import com.google.common.collect.ImmutableSortedSet;
+
+import java.util.SortedSet;
+
+/**
+ * An immutable view of a repository's sensors at one version of the sensor set. The set itself
+ * never changes and iterates in {@link Sensor#compareTo} order of the names and types the sensors
+ * had when it was built, so readers can hold on to it and iterate it without copying. The sensors
+ * inside are the live objects, so their activation state is always current; a sensor renamed
+ * without telling the repository keeps its place until the repository is told.
+ */
+public final class SensorSnapshot {
+
+    public static final SensorSnapshot EMPTY = new SensorSnapshot(0, ImmutableSortedSet.of());
+
+    private final long version;
+    private final ImmutableSortedSet<Sensor> sensors;
+
+    public SensorSnapshot(long version, ImmutableSortedSet<Sensor> sensors) {
+        this.version = version;
+        this.sensors = sensors;
+    }
+
+    /**
+     * @return a number that increases every time sensors are added to, removed from or moved within the set
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public SortedSet<Sensor> getSensors() {
+        return sensors;
+    }
+}
@@ -0,0 +1,96 @@
+package com.udacity.catpoint.security.data;
+
+import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.ImmutableSortedSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes sorted {@link SensorSnapshot}s of a repository's sensors. The repository calls
+ * {@link #changed()} after sensors are added, removed or renamed; the next reader builds one new
+ * snapshot and every reader after that gets the same instance until the set changes again.
+ */
+public class SensorSnapshotPublisher {
+
+    private final Collection<Sensor> sensors;
+    private final AtomicLong version = new AtomicLong();
+    private volatile SensorSnapshot snapshot = SensorSnapshot.EMPTY;
+
+    /**
+     * @param sensors the repository's live, concurrently readable sensors, in any order
+     */
+    public SensorSnapshotPublisher(Collection<Sensor> sensors) {
+        this.sensors = sensors;
+    }
+
+    /**
+     * Marks the published snapshot as stale. Call after the sensor set has been changed.
+     */
+    public void changed() {
+        version.incrementAndGet();
+    }
+
+    public SensorSnapshot get() {
+        SensorSnapshot current = snapshot;
+        if (current.getVersion() == version.get()) {
+            return current;
+        }
+        synchronized (this) {
+            long currentVersion = version.get();
+            if (snapshot.getVersion() != currentVersion) {
+                // a change racing with the copy bumps the version again, so it is picked up next time
+                snapshot = new SensorSnapshot(currentVersion, sortedCopy());
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Sorts the sensors by the names and types they have now. The sensors stay live, so the set
+     * orders them by copies of those fields instead: a sensor renamed later keeps its place and
+     * can still be found, until the rename reaches the repository and a new snapshot is built.
+     */
+    private ImmutableSortedSet<Sensor> sortedCopy() {
+        List<Sensor> current = new ArrayList<>(sensors);
+        Map<UUID, SortKey> sortKeys = new HashMap<>();
+        for (Sensor sensor : current) {
+            sortKeys.put(sensor.getSensorId(), new SortKey(sensor));
+        }
+        Comparator<Sensor> order = Comparator.comparing(sensor -> {
+            SortKey sortKey = sortKeys.get(sensor.getSensorId());
+            return sortKey != null ? sortKey : new SortKey(sensor);
+        });
+        return ImmutableSortedSet.copyOf(order, current);
+    }
+
+    /**
+     * The fields {@link Sensor#compareTo} orders by, as they were when a snapshot was built.
+     */
+    private static final class SortKey implements Comparable<SortKey> {
+        private final String name;
+        private final String sensorType;
+        private final UUID sensorId;
+
+        private SortKey(Sensor sensor) {
+            this.name = sensor.getName();
+            this.sensorType = sensor.getSensorType().toString();
+            this.sensorId = sensor.getSensorId();
+        }
+
+        @Override
+        public int compareTo(SortKey o) {
+            return ComparisonChain.start()
+                    .compare(name, o.name)
+                    .compare(sensorType, o.sensorType)
+                    .compare(sensorId, o.sensorId)
+                    .result();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.udacity.catpoint.security.data;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Settings for a repository that persists in the background instead of on every change. Pending
+ * changes are written every {@code flushInterval}, or sooner once {@code maxDirtyChanges} changes
+ * have piled up.
+ */
+public class WriteBehindPolicy {
+
+    private final Duration flushInterval;
+    private final int maxDirtyChanges;
+
+    public WriteBehindPolicy(Duration flushInterval, int maxDirtyChanges) {
+        Objects.requireNonNull(flushInterval, "flushInterval");
+        if (flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("Flush interval must be positive");
+        }
+        if (maxDirtyChanges < 1) {
+            throw new IllegalArgumentException("Max dirty changes must be at least 1");
+        }
+        this.flushInterval = flushInterval;
+        this.maxDirtyChanges = maxDirtyChanges;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public int getMaxDirtyChanges() {
+        return maxDirtyChanges;
+    }
+}
@@ -0,0 +1,75 @@
+package com.udacity.catpoint.security.service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * One frame from a camera, either still encoded (JPEG, PNG, ...) or already decoded.
+ */
+public final class CameraFrame {
+
+    private final String sourceId;
+    private final long timestamp;
+    private final byte[] encodedImage;
+    private final BufferedImage image;
+
+    private CameraFrame(String sourceId, long timestamp, byte[] encodedImage, BufferedImage image) {
+        this.sourceId = Objects.requireNonNull(sourceId);
+        this.timestamp = timestamp;
+        this.encodedImage = encodedImage;
+        this.image = image;
+    }
+
+    /**
+     * @param timestamp when the frame was captured, in epoch milliseconds
+     */
+    public static CameraFrame encoded(String sourceId, long timestamp, byte[] encodedImage) {
+        return new CameraFrame(sourceId, timestamp, Objects.requireNonNull(encodedImage), null);
+    }
+
+    /**
+     * @param timestamp when the frame was captured, in epoch milliseconds
+     */
+    public static CameraFrame decoded(String sourceId, long timestamp, BufferedImage image) {
+        return new CameraFrame(sourceId, timestamp, null, Objects.requireNonNull(image));
+    }
+
+    public String getSourceId() {
+        return sourceId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the encoded image, or null if the frame was created decoded
+     */
+    public byte[] getEncodedImage() {
+        return encodedImage;
+    }
+
+    /**
+     * @return the decoded image, or null if the frame still has to be decoded
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * @return the decoded image, decoding it first if the frame was created encoded
+     */
+    BufferedImage decode() throws IOException {
+        if (image != null) {
+            return image;
+        }
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(encodedImage));
+        if (decoded == null) {
+            throw new IOException("Unsupported image format");
+        }
+        return decoded;
+    }
+}
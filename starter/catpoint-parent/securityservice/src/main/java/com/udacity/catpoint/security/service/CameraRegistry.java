@@ -0,0 +1,350 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageAnalysisExecutors;
+import com.udacity.catpoint.image.service.ImageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Classifies continuous feeds from any number of cameras within one shared
+ * {@link ClassificationBudget}, and feeds the combined verdict into a SecurityService.
+ * <p>
+ * Each camera keeps only its newest unclassified frame; a frame that arrives before the previous
+ * one had its turn replaces it, so a busy site falls behind on frame rate, never on freshness. A
+ * single scheduler thread hands frames to the classifier as the budget allows. At most one frame
+ * per camera is classified at a time, and the camera whose frame has waited longest goes next,
+ * with cameras that last saw a cat counted as having waited longer.
+ * <p>
+ * Every camera remembers the verdict on its last classified frame. A cat is detected while any
+ * camera's last verdict is positive, and the SecurityService is told whenever that changes.
+ * <p>
+ * With a {@link SamplingController} set, frames arriving faster than the controller's current rate
+ * for their camera are skipped on arrival, and the controller learns every camera's verdicts.
+ */
+public class CameraRegistry implements AutoCloseable {
+
+    private final Logger log = LoggerFactory.getLogger(CameraRegistry.class);
+
+    /**
+     * One camera's state; guarded by the registry's lock.
+     */
+    private static final class Camera {
+        private final String cameraId;
+        private CameraFrame pending;
+        private long pendingSince;
+        private boolean classifying;
+        private Boolean catDetected;
+        private long framesReceived;
+        private long framesClassified;
+        private long framesReplaced;
+        private long framesSkipped;
+        private long failedFrames;
+
+        private Camera(String cameraId) {
+            this.cameraId = cameraId;
+        }
+
+        private CameraStatus toStatus() {
+            return new CameraStatus(cameraId, catDetected, framesReceived, framesClassified, framesReplaced,
+                    framesSkipped, failedFrames);
+        }
+    }
+
+    private final SecurityService securityService;
+    private final ImageService imageService;
+    private final long callIntervalNanos;
+    private final int maxConcurrency;
+    private final long positivePriorityNanos;
+    private final ExecutorService workers;
+    private final Thread scheduler;
+    private volatile SamplingController samplingController;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<String, Camera> cameras = new LinkedHashMap<>(); // guarded by lock
+    private int classifying; // guarded by lock
+    private int positiveCameras; // guarded by lock
+    private long nextCallAt = System.nanoTime(); // guarded by lock
+    private boolean closed; // guarded by lock
+
+    // verdicts are combined and applied one at a time, so the service sees them in order
+    private final Object applyLock = new Object();
+    private Boolean lastApplied; // guarded by applyLock
+
+    /**
+     * @param imageService classifies the frames; may differ from the one the service was built with
+     */
+    public CameraRegistry(SecurityService securityService, ImageService imageService, ClassificationBudget budget) {
+        this.securityService = securityService;
+        this.imageService = imageService;
+        this.callIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / budget.getCallsPerSecond());
+        this.maxConcurrency = budget.getMaxConcurrency();
+        this.positivePriorityNanos = budget.getPositivePriority().toNanos();
+        this.workers = ImageAnalysisExecutors.newPlatformThreadExecutor(maxConcurrency);
+        this.scheduler = new Thread(this::schedule, "camera-scheduler");
+        scheduler.setDaemon(true);
+        scheduler.start();
+    }
+
+    /**
+     * Lets the controller decide which frames are classified, or with null classifies every frame
+     * the budget allows.
+     */
+    public void setSamplingController(SamplingController samplingController) {
+        this.samplingController = samplingController;
+    }
+
+    /**
+     * Starts accepting frames from a camera. Adding a camera that is already registered does nothing.
+     */
+    public void addCamera(String cameraId) {
+        lock.lock();
+        try {
+            checkOpen();
+            cameras.putIfAbsent(cameraId, new Camera(cameraId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops tracking a camera. Its last verdict no longer counts towards the combined verdict, and
+     * the verdict on a frame of it still being classified is dropped.
+     */
+    public void removeCamera(String cameraId) {
+        synchronized (applyLock) {
+            boolean catDetected;
+            lock.lock();
+            try {
+                Camera camera = cameras.remove(cameraId);
+                if (camera == null) {
+                    return;
+                }
+                if (Boolean.TRUE.equals(camera.catDetected)) {
+                    positiveCameras--;
+                }
+                catDetected = positiveCameras > 0;
+            } finally {
+                lock.unlock();
+            }
+            apply(catDetected);
+        }
+        SamplingController controller = samplingController;
+        if (controller != null) {
+            controller.removeCamera(cameraId);
+        }
+    }
+
+    /**
+     * Hands the newest frame of a camera to the registry, replacing any frame of the same camera
+     * that is still waiting to be classified. Never blocks.
+     *
+     * @return false if the sampling controller skipped the frame
+     * @throws IllegalArgumentException if the frame's camera has not been added
+     */
+    public boolean pushFrame(CameraFrame frame) {
+        lock.lock();
+        try {
+            checkOpen();
+            Camera camera = cameras.get(frame.getSourceId());
+            if (camera == null) {
+                throw new IllegalArgumentException("Unknown camera " + frame.getSourceId());
+            }
+            camera.framesReceived++;
+            SamplingController controller = samplingController;
+            if (controller != null && !controller.shouldSample(camera.cameraId)) {
+                camera.framesSkipped++;
+                return false;
+            }
+            if (camera.pending != null) {
+                camera.framesReplaced++;
+            } else {
+                camera.pendingSince = System.nanoTime();
+            }
+            camera.pending = frame;
+            changed.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Camera registry is closed");
+        }
+    }
+
+    /**
+     * Runs on the scheduler thread, handing out one frame at a time as the budget allows.
+     */
+    private void schedule() {
+        lock.lock();
+        try {
+            while (!closed) {
+                Camera next = classifying < maxConcurrency ? nextCamera() : null;
+                if (next == null) {
+                    changed.await();
+                    continue;
+                }
+                long now = System.nanoTime();
+                if (nextCallAt - now > 0) {
+                    changed.awaitNanos(nextCallAt - now);
+                    continue;
+                }
+                nextCallAt = Math.max(nextCallAt, now - callIntervalNanos) + callIntervalNanos;
+                CameraFrame frame = next.pending;
+                next.pending = null;
+                next.classifying = true;
+                classifying++;
+                try {
+                    workers.execute(() -> classify(next, frame));
+                } catch (RejectedExecutionException e) {
+                    next.classifying = false;
+                    classifying--;
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the camera whose frame has waited longest, counting the priority of cameras that
+     * last saw a cat, or null if no camera has a frame ready
+     */
+    private Camera nextCamera() {
+        Camera next = null;
+        long nextSince = 0;
+        for (Camera camera : cameras.values()) {
+            if (camera.pending == null || camera.classifying) {
+                continue;
+            }
+            long since = Boolean.TRUE.equals(camera.catDetected)
+                    ? camera.pendingSince - positivePriorityNanos : camera.pendingSince;
+            if (next == null || since - nextSince < 0) {
+                next = camera;
+                nextSince = since;
+            }
+        }
+        return next;
+    }
+
+    private void classify(Camera camera, CameraFrame frame) {
+        Boolean cat = null;
+        try {
+            BufferedImage image = frame.decode();
+            cat = imageService.imageContainsCat(image, SecurityService.CAT_CONFIDENCE_THRESHOLD);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to classify frame from camera {} at {}", camera.cameraId, frame.getTimestamp(), e);
+        }
+        SamplingController controller = samplingController;
+        if (controller != null && cat != null) {
+            controller.recordVerdict(camera.cameraId, cat);
+        }
+        synchronized (applyLock) {
+            boolean catDetected;
+            lock.lock();
+            try {
+                classifying--;
+                camera.classifying = false;
+                changed.signalAll();
+                if (cat == null) {
+                    camera.failedFrames++;
+                    return;
+                }
+                camera.framesClassified++;
+                if (cameras.get(camera.cameraId) != camera) {
+                    return; // removed meanwhile
+                }
+                if (!cat.equals(camera.catDetected)) {
+                    positiveCameras += cat ? 1 : (camera.catDetected == null ? 0 : -1);
+                    camera.catDetected = cat;
+                }
+                catDetected = positiveCameras > 0;
+            } finally {
+                lock.unlock();
+            }
+            apply(catDetected);
+        }
+    }
+
+    /**
+     * Tells the service about the combined verdict if it changed; the caller holds applyLock.
+     */
+    private void apply(boolean catDetected) {
+        if (lastApplied == null || lastApplied != catDetected) {
+            lastApplied = catDetected;
+            securityService.applyImageResult(securityService.nextImageSequence(), catDetected);
+        }
+    }
+
+    /**
+     * @return true while the last classified frame of any camera showed a cat
+     */
+    public boolean isCatDetected() {
+        lock.lock();
+        try {
+            return positiveCameras > 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the camera's state, or null if no such camera is registered
+     */
+    public CameraStatus getCameraStatus(String cameraId) {
+        lock.lock();
+        try {
+            Camera camera = cameras.get(cameraId);
+            return camera == null ? null : camera.toStatus();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the state of every camera, in the order they were added
+     */
+    public List<CameraStatus> getCameraStatuses() {
+        lock.lock();
+        try {
+            List<CameraStatus> statuses = new ArrayList<>(cameras.size());
+            cameras.values().forEach(camera -> statuses.add(camera.toStatus()));
+            return statuses;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops scheduling frames. Frames already handed to the classifier are still applied.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        workers.shutdown();
+    }
+}
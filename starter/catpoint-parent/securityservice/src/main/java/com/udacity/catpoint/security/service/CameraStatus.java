@@ -0,0 +1,63 @@
+package com.udacity.catpoint.security.service;
+
+/**
+ * Detection state and counters of one camera in a {@link CameraRegistry} at one point in time.
+ */
+public class CameraStatus {
+
+    private final String cameraId;
+    private final Boolean catDetected;
+    private final long framesReceived;
+    private final long framesClassified;
+    private final long framesReplaced;
+    private final long framesSkipped;
+    private final long failedFrames;
+
+    public CameraStatus(String cameraId, Boolean catDetected, long framesReceived, long framesClassified,
+                        long framesReplaced, long framesSkipped, long failedFrames) {
+        this.cameraId = cameraId;
+        this.catDetected = catDetected;
+        this.framesReceived = framesReceived;
+        this.framesClassified = framesClassified;
+        this.framesReplaced = framesReplaced;
+        this.framesSkipped = framesSkipped;
+        this.failedFrames = failedFrames;
+    }
+
+    public String getCameraId() {
+        return cameraId;
+    }
+
+    /**
+     * @return the verdict on the camera's last classified frame, or null before the first one
+     */
+    public Boolean getCatDetected() {
+        return catDetected;
+    }
+
+    public long getFramesReceived() {
+        return framesReceived;
+    }
+
+    public long getFramesClassified() {
+        return framesClassified;
+    }
+
+    /**
+     * @return frames that were replaced by a newer frame from the same camera before their turn came
+     */
+    public long getFramesReplaced() {
+        return framesReplaced;
+    }
+
+    /**
+     * @return frames the sampling controller skipped on arrival
+     */
+    public long getFramesSkipped() {
+        return framesSkipped;
+    }
+
+    public long getFailedFrames() {
+        return failedFrames;
+    }
+}
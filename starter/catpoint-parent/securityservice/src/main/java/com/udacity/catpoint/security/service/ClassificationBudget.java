@@ -0,0 +1,44 @@
+package com.udacity.catpoint.security.service;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * How much classification a {@link CameraRegistry} may use across all its cameras: at most
+ * {@code callsPerSecond} calls, spread evenly, and at most {@code maxConcurrency} at the same time.
+ * A camera whose last frame showed a cat is scheduled as though its frame had been waiting
+ * {@code positivePriority} longer, so it is looked at more often without starving the others.
+ */
+public class ClassificationBudget {
+
+    private final double callsPerSecond;
+    private final int maxConcurrency;
+    private final Duration positivePriority;
+
+    public ClassificationBudget(double callsPerSecond, int maxConcurrency, Duration positivePriority) {
+        if (!(callsPerSecond > 0)) {
+            throw new IllegalArgumentException("Calls per second must be positive");
+        }
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Max concurrency must be at least 1");
+        }
+        if (positivePriority.isNegative()) {
+            throw new IllegalArgumentException("Positive priority must not be negative");
+        }
+        this.callsPerSecond = callsPerSecond;
+        this.maxConcurrency = maxConcurrency;
+        this.positivePriority = Objects.requireNonNull(positivePriority);
+    }
+
+    public double getCallsPerSecond() {
+        return callsPerSecond;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public Duration getPositivePriority() {
+        return positivePriority;
+    }
+}
@@ -0,0 +1,282 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageAnalysisExecutors;
+import com.udacity.catpoint.image.service.ImageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Classifies a stream of camera frames, from any number of sources, and feeds the verdicts into a
+ * SecurityService.
+ * <p>
+ * Each frame is decoded, pre-processed and classified on one of {@code maxConcurrency} workers.
+ * At most {@code capacity} frames can be inside the pipeline at once; {@link #submit} blocks and
+ * {@link #offer} gives up when it is full, so a fast camera slows down instead of piling up
+ * frames. Verdicts are applied in the order frames were submitted, and a verdict for a frame
+ * captured before the last applied one from the same source is dropped, so the alarm follows
+ * each camera's timestamps however the workers finish. Timestamps are only compared within a
+ * source, as the clocks of different cameras need not agree.
+ * <p>
+ * Verdicts are applied outside the reorder lock by one thread at a time: whichever worker finds
+ * no one applying takes over and applies every verdict that is ready, including those other
+ * workers finish meanwhile.
+ */
+public class FramePipeline implements AutoCloseable {
+
+    private final Logger log = LoggerFactory.getLogger(FramePipeline.class);
+
+    /**
+     * A frame that has been through the workers, waiting for its turn to be applied.
+     */
+    private static final class Outcome {
+        private final CameraFrame frame;
+        private final long imageSequence;
+        private final Boolean cat; // null if the frame failed
+
+        private Outcome(CameraFrame frame, long imageSequence, Boolean cat) {
+            this.frame = frame;
+            this.imageSequence = imageSequence;
+            this.cat = cat;
+        }
+    }
+
+    private final SecurityService securityService;
+    private final ImageService imageService;
+    private final UnaryOperator<BufferedImage> preprocessor;
+    private final ExecutorService workers;
+    private final int capacity;
+    private final Semaphore freeSlots;
+    private volatile boolean closed;
+
+    private final long startedAt = System.nanoTime();
+    private final Map<FrameStage, LongAdder> processed = new EnumMap<>(FrameStage.class);
+    private final Map<FrameStage, LongAdder> busyNanos = new EnumMap<>(FrameStage.class);
+    private final AtomicInteger waitingForWorker = new AtomicInteger();
+    private final AtomicLong failedFrames = new AtomicLong();
+    private final AtomicLong staleFrames = new AtomicLong();
+
+    // reorder buffer: frames are numbered on submission and applied strictly in that order
+    private final Object reorderLock = new Object();
+    private long nextSubmission; // guarded by reorderLock
+    private long nextToApply; // guarded by reorderLock
+    private boolean applying; // guarded by reorderLock
+    private final Map<Long, Outcome> finished = new HashMap<>(); // guarded by reorderLock
+    // only used by the thread that is applying, which takes over under reorderLock
+    private final Map<String, Long> latestAppliedTimestamps = new HashMap<>();
+
+    public FramePipeline(SecurityService securityService, ImageService imageService, int maxConcurrency, int capacity) {
+        this(securityService, imageService, maxConcurrency, capacity, UnaryOperator.identity());
+    }
+
+    /**
+     * @param imageService   classifies the frames; may differ from the one the service was built with
+     * @param maxConcurrency how many frames are worked on at the same time
+     * @param capacity       how many frames may be in the pipeline, waiting or being worked on
+     * @param preprocessor   prepares a decoded frame for classification, for example by scaling it down
+     */
+    public FramePipeline(SecurityService securityService, ImageService imageService, int maxConcurrency, int capacity,
+                         UnaryOperator<BufferedImage> preprocessor) {
+        if (maxConcurrency < 1 || capacity < maxConcurrency) {
+            throw new IllegalArgumentException("Need at least one worker and room for a frame per worker");
+        }
+        this.securityService = securityService;
+        this.imageService = imageService;
+        this.preprocessor = preprocessor;
+        this.capacity = capacity;
+        this.freeSlots = new Semaphore(capacity);
+        this.workers = ImageAnalysisExecutors.newPlatformThreadExecutor(maxConcurrency);
+        for (FrameStage stage : FrameStage.values()) {
+            processed.put(stage, new LongAdder());
+            busyNanos.put(stage, new LongAdder());
+        }
+    }
+
+    /**
+     * Adds a frame, waiting for room if the pipeline is full.
+     */
+    public void submit(CameraFrame frame) throws InterruptedException {
+        checkOpen();
+        freeSlots.acquire();
+        admit(frame);
+    }
+
+    /**
+     * Adds a frame if there is room within the timeout.
+     *
+     * @return false if the pipeline stayed full and the frame was not added
+     */
+    public boolean offer(CameraFrame frame, Duration timeout) throws InterruptedException {
+        checkOpen();
+        if (!freeSlots.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            return false;
+        }
+        admit(frame);
+        return true;
+    }
+
+    /**
+     * Adds every frame of the stream in order, waiting for room as needed.
+     */
+    public void submitAll(Stream<CameraFrame> frames) throws InterruptedException {
+        Iterator<CameraFrame> it = frames.iterator();
+        while (it.hasNext()) {
+            submit(it.next());
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Frame pipeline is closed");
+        }
+    }
+
+    private void admit(CameraFrame frame) {
+        long submission;
+        long imageSequence;
+        synchronized (reorderLock) {
+            submission = nextSubmission++;
+            imageSequence = securityService.nextImageSequence();
+        }
+        waitingForWorker.incrementAndGet();
+        try {
+            workers.execute(() -> process(submission, imageSequence, frame));
+        } catch (RejectedExecutionException e) {
+            // closed meanwhile; the frame still has to take its turn so later ones are not held up
+            waitingForWorker.decrementAndGet();
+            failedFrames.incrementAndGet();
+            finish(submission, new Outcome(frame, imageSequence, null));
+        }
+    }
+
+    private void process(long submission, long imageSequence, CameraFrame frame) {
+        waitingForWorker.decrementAndGet();
+        Boolean cat = null;
+        try {
+            long start = System.nanoTime();
+            BufferedImage image = frame.decode();
+            start = record(FrameStage.DECODE, start);
+            image = preprocessor.apply(image);
+            start = record(FrameStage.PREPROCESS, start);
+            cat = imageService.imageContainsCat(image, SecurityService.CAT_CONFIDENCE_THRESHOLD);
+            record(FrameStage.CLASSIFY, start);
+        } catch (IOException | RuntimeException e) {
+            failedFrames.incrementAndGet();
+            log.warn("Unable to classify frame from {} at {}", frame.getSourceId(), frame.getTimestamp(), e);
+        }
+        finish(submission, new Outcome(frame, imageSequence, cat));
+    }
+
+    private long record(FrameStage stage, long start) {
+        long end = System.nanoTime();
+        processed.get(stage).increment();
+        busyNanos.get(stage).add(end - start);
+        return end;
+    }
+
+    private void finish(long submission, Outcome outcome) {
+        synchronized (reorderLock) {
+            finished.put(submission, outcome);
+            if (applying) {
+                return; // the applying thread picks it up when its turn comes
+            }
+            applying = true;
+        }
+        List<Outcome> ready = new ArrayList<>();
+        while (true) {
+            synchronized (reorderLock) {
+                Outcome next;
+                while ((next = finished.remove(nextToApply)) != null) {
+                    nextToApply++;
+                    ready.add(next);
+                }
+                if (ready.isEmpty()) {
+                    applying = false;
+                    return;
+                }
+            }
+            for (Outcome next : ready) {
+                try {
+                    apply(next);
+                } catch (RuntimeException e) {
+                    log.warn("Unable to apply verdict for frame from {} at {}",
+                            next.frame.getSourceId(), next.frame.getTimestamp(), e);
+                } finally {
+                    freeSlots.release();
+                }
+            }
+            ready.clear();
+        }
+    }
+
+    private void apply(Outcome outcome) {
+        if (outcome.cat == null) {
+            return;
+        }
+        String sourceId = outcome.frame.getSourceId();
+        Long latestApplied = latestAppliedTimestamps.get(sourceId);
+        if (latestApplied != null && outcome.frame.getTimestamp() < latestApplied) {
+            staleFrames.incrementAndGet();
+            return;
+        }
+        latestAppliedTimestamps.put(sourceId, outcome.frame.getTimestamp());
+        long start = System.nanoTime();
+        securityService.applyImageResult(outcome.imageSequence, outcome.cat);
+        record(FrameStage.APPLY, start);
+    }
+
+    /**
+     * Waits until every submitted frame has been applied or dropped.
+     *
+     * @return false if frames were still in the pipeline when the timeout ran out
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+        if (!freeSlots.tryAcquire(capacity, timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            return false;
+        }
+        freeSlots.release(capacity);
+        return true;
+    }
+
+    public FramePipelineStats getStats() {
+        Map<FrameStage, Long> processedNow = new EnumMap<>(FrameStage.class);
+        Map<FrameStage, Long> busyNow = new EnumMap<>(FrameStage.class);
+        for (FrameStage stage : FrameStage.values()) {
+            processedNow.put(stage, processed.get(stage).sum());
+            busyNow.put(stage, busyNanos.get(stage).sum());
+        }
+        int waitingForApply;
+        synchronized (reorderLock) {
+            waitingForApply = finished.size();
+        }
+        return new FramePipelineStats(Duration.ofNanos(System.nanoTime() - startedAt), processedNow, busyNow,
+                waitingForWorker.get(), waitingForApply, failedFrames.get(), staleFrames.get());
+    }
+
+    /**
+     * Stops accepting frames. Frames already submitted are still classified and applied.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        workers.shutdown();
+    }
+}
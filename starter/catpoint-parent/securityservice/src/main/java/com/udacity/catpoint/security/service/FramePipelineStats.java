@@ -0,0 +1,89 @@
+package com.udacity.catpoint.security.service;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Counters of a {@link FramePipeline} at one point in time.
+ */
+public class FramePipelineStats {
+
+    private final Duration uptime;
+    private final Map<FrameStage, Long> processed;
+    private final Map<FrameStage, Long> busyNanos;
+    private final int waitingForWorker;
+    private final int waitingForApply;
+    private final long failedFrames;
+    private final long staleFrames;
+
+    public FramePipelineStats(Duration uptime, Map<FrameStage, Long> processed, Map<FrameStage, Long> busyNanos,
+                              int waitingForWorker, int waitingForApply, long failedFrames, long staleFrames) {
+        this.uptime = uptime;
+        this.processed = new EnumMap<>(processed);
+        this.busyNanos = new EnumMap<>(busyNanos);
+        this.waitingForWorker = waitingForWorker;
+        this.waitingForApply = waitingForApply;
+        this.failedFrames = failedFrames;
+        this.staleFrames = staleFrames;
+    }
+
+    public long getProcessed(FrameStage stage) {
+        return processed.getOrDefault(stage, 0L);
+    }
+
+    /**
+     * @return frames per second that passed through the stage since the pipeline started
+     */
+    public double getThroughput(FrameStage stage) {
+        double seconds = uptime.toNanos() / 1e9;
+        return seconds == 0 ? 0 : getProcessed(stage) / seconds;
+    }
+
+    /**
+     * @return the average time one frame spends in the stage
+     */
+    public Duration getAverageTime(FrameStage stage) {
+        long count = getProcessed(stage);
+        return count == 0 ? Duration.ZERO : Duration.ofNanos(busyNanos.getOrDefault(stage, 0L) / count);
+    }
+
+    /**
+     * @return frames accepted but not yet picked up by a worker
+     */
+    public int getWaitingForWorker() {
+        return waitingForWorker;
+    }
+
+    /**
+     * @return classified frames held back until the frames before them are done
+     */
+    public int getWaitingForApply() {
+        return waitingForApply;
+    }
+
+    /**
+     * @return frames that could not be decoded or classified
+     */
+    public long getFailedFrames() {
+        return failedFrames;
+    }
+
+    /**
+     * @return frames whose verdict was dropped because a later frame had already been applied
+     */
+    public long getStaleFrames() {
+        return staleFrames;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (FrameStage stage : FrameStage.values()) {
+            text.append(String.format("%s=%.1f/s (%dus), ", stage.name().toLowerCase(), getThroughput(stage),
+                    getAverageTime(stage).toNanos() / 1000));
+        }
+        return text.append(String.format("waiting=%d, reorder=%d, failed=%d, stale=%d",
+                waitingForWorker, waitingForApply, failedFrames, staleFrames)).toString();
+    }
+}
@@ -0,0 +1,11 @@
+package com.udacity.catpoint.security.service;
+
+/**
+ * The steps a frame goes through in a {@link FramePipeline}.
+ */
+public enum FrameStage {
+    DECODE,
+    PREPROCESS,
+    CLASSIFY,
+    APPLY
+}
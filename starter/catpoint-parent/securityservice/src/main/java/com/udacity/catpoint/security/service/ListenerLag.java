@@ -0,0 +1,57 @@
+package com.udacity.catpoint.security.service;
+
+import java.time.Duration;
+
+/**
+ * How far one listener is behind the engine, as reported by its queue.
+ */
+public class ListenerLag {
+
+    public static final ListenerLag NONE = new ListenerLag(0, Duration.ZERO, 0, 0, 0);
+
+    private final int queuedEvents;
+    private final Duration oldestEventAge;
+    private final long deliveredEvents;
+    private final long droppedEvents;
+    private final long coalescedEvents;
+
+    public ListenerLag(int queuedEvents, Duration oldestEventAge, long deliveredEvents, long droppedEvents, long coalescedEvents) {
+        this.queuedEvents = queuedEvents;
+        this.oldestEventAge = oldestEventAge;
+        this.deliveredEvents = deliveredEvents;
+        this.droppedEvents = droppedEvents;
+        this.coalescedEvents = coalescedEvents;
+    }
+
+    /**
+     * @return number of events waiting to be delivered
+     */
+    public int getQueuedEvents() {
+        return queuedEvents;
+    }
+
+    /**
+     * @return how long the oldest undelivered event has been waiting
+     */
+    public Duration getOldestEventAge() {
+        return oldestEventAge;
+    }
+
+    public long getDeliveredEvents() {
+        return deliveredEvents;
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents;
+    }
+
+    public long getCoalescedEvents() {
+        return coalescedEvents;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("queued=%d, oldest=%dms, delivered=%d, dropped=%d, coalesced=%d",
+                queuedEvents, oldestEventAge.toMillis(), deliveredEvents, droppedEvents, coalescedEvents);
+    }
+}
@@ -0,0 +1,28 @@
+package com.udacity.catpoint.security.service;
+
+/**
+ * What a {@link QueuedStatusListener} does with a new event when the listener's queue is full.
+ */
+public enum ListenerOverflowPolicy {
+    /**
+     * Make the caller wait until the listener has caught up. No event is lost, but a slow
+     * listener slows down the engine. In SecurityService the event is queued and delivered to
+     * every listener first; the thread that caused it then waits for room once it has released
+     * all its locks, so a full listener holds back the threads producing events without stopping
+     * delivery to the other listeners.
+     */
+    BLOCK,
+
+    /**
+     * Throw away the oldest queued event to make room for the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Replace the newest queued event with the new one if both are of the same kind, since only
+     * the latest alarm status, cat verdict or sensor refresh matters. Only the newest event is
+     * replaced, so coalescing never moves an event past one of another kind; otherwise the
+     * oldest event is dropped.
+     */
+    COALESCE
+}
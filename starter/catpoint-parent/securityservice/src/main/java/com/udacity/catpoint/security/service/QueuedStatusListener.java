@@ -0,0 +1,273 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.StatusListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * StatusListener that hands every event to a bounded queue and delivers it to the wrapped listener
+ * on that listener's own executor. The engine only pays for an enqueue, and a slow listener only
+ * delays itself. Events reach the wrapped listener in the order they were sent; what happens when
+ * the queue is full is decided by the {@link ListenerOverflowPolicy}.
+ */
+public class QueuedStatusListener implements StatusListener, AutoCloseable {
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final Logger log = LoggerFactory.getLogger(QueuedStatusListener.class);
+
+    private enum EventKind { ALARM_STATUS, CAT_DETECTED, SENSOR_STATUS }
+
+    private static class Event {
+        private final EventKind kind;
+        private final Consumer<StatusListener> delivery;
+        private final long enqueuedAt = System.nanoTime();
+
+        private Event(EventKind kind, Consumer<StatusListener> delivery) {
+            this.kind = kind;
+            this.delivery = delivery;
+        }
+    }
+
+    private final StatusListener delegate;
+    private final int capacity;
+    private final ListenerOverflowPolicy overflowPolicy;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Deque<Event> queue = new ArrayDeque<>();
+    private boolean draining;
+    private boolean closed;
+    // set when the sender waits for room itself, after it has let go of its own locks
+    private volatile boolean deferBlocking;
+    private final AtomicLong deliveredEvents = new AtomicLong();
+    private long droppedEvents;
+    private long coalescedEvents;
+
+    /**
+     * Creates a queued listener with its own single delivery thread.
+     */
+    public QueuedStatusListener(StatusListener delegate, int capacity, ListenerOverflowPolicy overflowPolicy) {
+        this(delegate, capacity, overflowPolicy, Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "status-listener-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    /**
+     * Creates a queued listener that delivers on the given executor, for example the Swing event
+     * thread. Only one delivery task is submitted at a time, so order is kept on any executor.
+     * With {@link ListenerOverflowPolicy#BLOCK} the executor must not run on the threads that send events.
+     */
+    public QueuedStatusListener(StatusListener delegate, int capacity, ListenerOverflowPolicy overflowPolicy, Executor executor) {
+        this(delegate, capacity, overflowPolicy, executor, false);
+    }
+
+    private QueuedStatusListener(StatusListener delegate, int capacity, ListenerOverflowPolicy overflowPolicy,
+                                 Executor executor, boolean ownsExecutor) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1");
+        }
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.executor = executor;
+        this.ownedExecutor = ownsExecutor ? (ExecutorService) executor : null;
+    }
+
+    public StatusListener getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * With {@link ListenerOverflowPolicy#BLOCK}, makes sending an event never wait: an event for a
+     * full queue is queued anyway, and the sender is expected to call {@link #awaitRoom()} once
+     * it holds no locks. SecurityService uses this so a full listener cannot stop delivery to the
+     * others. The queue can then exceed its capacity by one event per sending thread at most.
+     *
+     * @return this listener
+     */
+    QueuedStatusListener deferBlocking() {
+        deferBlocking = true;
+        return this;
+    }
+
+    /**
+     * With {@link ListenerOverflowPolicy#BLOCK}, waits until the queue has room for another event
+     * or the listener is closed. Returns at once with the other policies.
+     */
+    void awaitRoom() {
+        if (overflowPolicy != ListenerOverflowPolicy.BLOCK) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (queue.size() >= capacity && !closed) {
+                notFull.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        enqueue(new Event(EventKind.ALARM_STATUS, l -> l.notify(status)));
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        enqueue(new Event(EventKind.CAT_DETECTED, l -> l.catDetected(catDetected)));
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        enqueue(new Event(EventKind.SENSOR_STATUS, StatusListener::sensorStatusChanged));
+    }
+
+    private void enqueue(Event event) {
+        boolean startDrain = false;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (queue.size() >= capacity) {
+                switch (overflowPolicy) {
+                    case BLOCK -> {
+                        while (!deferBlocking && queue.size() >= capacity && !closed) {
+                            notFull.awaitUninterruptibly();
+                        }
+                        if (closed) {
+                            return;
+                        }
+                    }
+                    case DROP_OLDEST -> dropOldest();
+                    case COALESCE -> {
+                        if (queue.peekLast().kind == event.kind) {
+                            queue.pollLast();
+                            coalescedEvents++;
+                        } else {
+                            dropOldest();
+                        }
+                    }
+                }
+            }
+            queue.addLast(event);
+            if (!draining) {
+                draining = true;
+                startDrain = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (startDrain) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Hands a drain to the executor. close() may shut the executor down at any moment, so a
+     * rejection is expected: the events that can no longer be delivered are dropped rather than
+     * the exception reaching whichever engine thread sent the event.
+     */
+    private void scheduleDrain() {
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            lock.lock();
+            try {
+                droppedEvents += queue.size();
+                queue.clear();
+                draining = false;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            log.debug("Status listener executor is shut down, dropped undelivered events");
+        }
+    }
+
+    private void dropOldest() {
+        queue.pollFirst();
+        droppedEvents++;
+    }
+
+    /**
+     * Delivers up to one queue's worth of events, then hands the executor back so a shared
+     * executor is not monopolized. Schedules itself again if events are still waiting.
+     */
+    private void drain() {
+        for (int delivered = 0; delivered < capacity; delivered++) {
+            Event event;
+            lock.lock();
+            try {
+                event = queue.pollFirst();
+                if (event == null) {
+                    draining = false;
+                    return;
+                }
+                // several senders may be waiting, and the queue may be over capacity
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                event.delivery.accept(delegate);
+            } catch (RuntimeException e) {
+                log.error("Status listener failed to handle an event", e);
+            }
+            deliveredEvents.incrementAndGet();
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * @return how far this listener is behind
+     */
+    public ListenerLag getLag() {
+        lock.lock();
+        try {
+            Event oldest = queue.peekFirst();
+            Duration age = oldest == null ? Duration.ZERO : Duration.ofNanos(System.nanoTime() - oldest.enqueuedAt);
+            return new ListenerLag(queue.size(), age, deliveredEvents.get(), droppedEvents, coalescedEvents);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting events and releases any sender blocked on a full queue. Events already
+     * queued are still delivered. Shuts down the delivery thread if this listener created it.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+}
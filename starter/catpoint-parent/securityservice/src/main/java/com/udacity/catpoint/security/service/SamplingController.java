@@ -0,0 +1,154 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.StatusListener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides how often each camera's frames are worth classifying, following a
+ * {@link SamplingPolicy}. Sampling slows down or pauses while the system is disarmed or nothing
+ * has happened for a while, and speeds up as soon as a cat is seen, a sensor changes or an alarm
+ * is pending. A camera that saw a cat itself is sampled at the active rate for a while even when
+ * the combined verdict has moved on.
+ * <p>
+ * Register it as a StatusListener of the SecurityService to follow alarm, arming, sensor and
+ * detection changes; with a {@link CameraRegistry} it also learns each camera's own verdicts. Frame
+ * sources either ask {@link #shouldSample(String)} before sending a frame, or the registry asks on
+ * their behalf.
+ */
+public class SamplingController implements StatusListener {
+
+    /**
+     * Per camera timestamps, in the controller's clock.
+     */
+    private static final class CameraSampling {
+        private final AtomicLong lastSampled = new AtomicLong(Long.MIN_VALUE);
+        private volatile long lastCatAt = Long.MIN_VALUE;
+    }
+
+    // stands in for a camera the controller has not heard of; never changed
+    private static final CameraSampling UNSEEN = new CameraSampling();
+
+    private final SecurityService securityService;
+    private final SamplingPolicy policy;
+    private final LongSupplier nanoClock;
+    private final Map<String, CameraSampling> cameras = new ConcurrentHashMap<>();
+
+    private volatile AlarmStatus alarmStatus;
+    private volatile long lastActivityAt;
+
+    public SamplingController(SecurityService securityService, SamplingPolicy policy) {
+        this(securityService, policy, System::nanoTime);
+    }
+
+    SamplingController(SecurityService securityService, SamplingPolicy policy, LongSupplier nanoClock) {
+        this.securityService = securityService;
+        this.policy = policy;
+        this.nanoClock = nanoClock;
+        this.alarmStatus = securityService.getAlarmStatus();
+        this.lastActivityAt = nanoClock.getAsLong();
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        alarmStatus = status;
+        if (status != AlarmStatus.NO_ALARM) {
+            lastActivityAt = nanoClock.getAsLong();
+        }
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        if (catDetected) {
+            lastActivityAt = nanoClock.getAsLong();
+        }
+    }
+
+    /**
+     * Sent for sensor changes and arming changes alike; either counts as activity.
+     */
+    @Override
+    public void sensorStatusChanged() {
+        lastActivityAt = nanoClock.getAsLong();
+    }
+
+    /**
+     * Records the verdict on a camera's frame, so a camera that saw a cat keeps being sampled fast.
+     */
+    public void recordVerdict(String cameraId, boolean catDetected) {
+        CameraSampling camera = camera(cameraId);
+        if (catDetected) {
+            camera.lastCatAt = nanoClock.getAsLong();
+        }
+    }
+
+    /**
+     * @return how many frames per second of this camera are worth classifying right now; 0 while
+     * sampling is paused
+     */
+    public double getRate(String cameraId) {
+        return rate(cameras.getOrDefault(cameraId, UNSEEN), nanoClock.getAsLong());
+    }
+
+    /**
+     * @return the current rate of every camera the controller has heard of
+     */
+    public Map<String, Double> getRates() {
+        long now = nanoClock.getAsLong();
+        Map<String, Double> rates = new LinkedHashMap<>();
+        cameras.forEach((cameraId, camera) -> rates.put(cameraId, rate(camera, now)));
+        return rates;
+    }
+
+    /**
+     * Decides whether the camera's frame arriving now should be classified, and if so counts it
+     * as sampled. Frames are let through at most at the camera's current rate.
+     */
+    public boolean shouldSample(String cameraId) {
+        CameraSampling camera = camera(cameraId);
+        long now = nanoClock.getAsLong();
+        double rate = rate(camera, now);
+        if (rate <= 0) {
+            return false;
+        }
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long last = camera.lastSampled.get();
+        return (last == Long.MIN_VALUE || now - last >= interval) && camera.lastSampled.compareAndSet(last, now);
+    }
+
+    /**
+     * Forgets a camera that is no longer in use.
+     */
+    public void removeCamera(String cameraId) {
+        cameras.remove(cameraId);
+    }
+
+    private CameraSampling camera(String cameraId) {
+        return cameras.computeIfAbsent(cameraId, id -> new CameraSampling());
+    }
+
+    private double rate(CameraSampling camera, long now) {
+        AlarmStatus alarm = alarmStatus;
+        if (alarm != AlarmStatus.NO_ALARM) {
+            return policy.getActiveRate();
+        }
+        if (securityService.getArmingStatus() == ArmingStatus.DISARMED) {
+            return policy.getDisarmedRate();
+        }
+        long hold = policy.getActiveHold().toNanos();
+        if (now - lastActivityAt < hold || (camera.lastCatAt != Long.MIN_VALUE && now - camera.lastCatAt < hold)) {
+            return policy.getActiveRate();
+        }
+        if (now - lastActivityAt >= policy.getIdleAfter().toNanos()) {
+            return policy.getIdleRate();
+        }
+        return policy.getArmedRate();
+    }
+}
@@ -0,0 +1,67 @@
+package com.udacity.catpoint.security.service;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Frame rates, in frames per second, a {@link SamplingController} chooses between.
+ * <ul>
+ * <li>{@code disarmedRate} while the system is disarmed and no alarm is raised; 0 pauses sampling.</li>
+ * <li>{@code activeRate} while an alarm is pending or raised, and for {@code activeHold} after a
+ * cat was seen or a sensor changed.</li>
+ * <li>{@code idleRate} once an armed system has been quiet for {@code idleAfter}.</li>
+ * <li>{@code armedRate} otherwise.</li>
+ * </ul>
+ */
+public class SamplingPolicy {
+
+    private final double disarmedRate;
+    private final double idleRate;
+    private final double armedRate;
+    private final double activeRate;
+    private final Duration activeHold;
+    private final Duration idleAfter;
+
+    public SamplingPolicy(double disarmedRate, double idleRate, double armedRate, double activeRate,
+                          Duration activeHold, Duration idleAfter) {
+        if (disarmedRate < 0 || idleRate < 0 || armedRate < 0) {
+            throw new IllegalArgumentException("Frame rates must not be negative");
+        }
+        if (!(activeRate > 0)) {
+            throw new IllegalArgumentException("Active frame rate must be positive");
+        }
+        if (activeHold.isNegative() || idleAfter.isNegative()) {
+            throw new IllegalArgumentException("Durations must not be negative");
+        }
+        this.disarmedRate = disarmedRate;
+        this.idleRate = idleRate;
+        this.armedRate = armedRate;
+        this.activeRate = activeRate;
+        this.activeHold = Objects.requireNonNull(activeHold);
+        this.idleAfter = Objects.requireNonNull(idleAfter);
+    }
+
+    public double getDisarmedRate() {
+        return disarmedRate;
+    }
+
+    public double getIdleRate() {
+        return idleRate;
+    }
+
+    public double getArmedRate() {
+        return armedRate;
+    }
+
+    public double getActiveRate() {
+        return activeRate;
+    }
+
+    public Duration getActiveHold() {
+        return activeHold;
+    }
+
+    public Duration getIdleAfter() {
+        return idleAfter;
+    }
+}
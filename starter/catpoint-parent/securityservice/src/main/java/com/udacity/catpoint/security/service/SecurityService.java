@@ -1,17 +1,36 @@
 package com.udacity.catpoint.security.service;
 
+import com.google.common.util.concurrent.Striped;
+import com.udacity.catpoint.image.service.ImageAnalysisExecutors;
 import com.udacity.catpoint.image.service.ImageService;
 import com.udacity.catpoint.security.data.StatusListener;
 import com.udacity.catpoint.security.data.AlarmStatus;
 import com.udacity.catpoint.security.data.ArmingStatus;
 import com.udacity.catpoint.security.data.SecurityRepository;
 import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorActivation;
+import com.udacity.catpoint.security.data.SensorSnapshot;
+import com.udacity.catpoint.security.data.SensorType;
 
 import java.awt.image.BufferedImage;
-import java.util.HashSet;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 /**
@@ -20,16 +39,48 @@ import java.util.stream.Collectors;
  * <p>
  * This is the class that should contain most of the business logic for our system, and it is the
  * class you will be writing unit tests for.
+ * <p>
+ * The service is safe to call from many threads at once. Sensor updates, the repository write
+ * included, are serialized per sensor through striped locks, so events for different sensors run
+ * in parallel. The alarm state machine and the arming status each have their own lock, and the
+ * alarm lock is only held to evaluate and store a transition. A sensor is stored before its
+ * transition is evaluated, and transitions read the repository's atomic count of active sensors,
+ * so a transition evaluated in between, such as a cat verdict, already sees the change. Locks are
+ * always taken in the order arming, sensor, alarm.
+ * <p>
+ * Listeners are never called while a lock is held. Events are queued in the order the transitions
+ * happened and delivered, in that order, once the thread that caused them has released its locks.
  */
 public class SecurityService {
 
-    private ImageService imageService;
-    private SecurityRepository securityRepository;
-    private Set<StatusListener> statusListeners = new HashSet<>();
+    private static final int SENSOR_LOCK_STRIPES = 64;
+    static final float CAT_CONFIDENCE_THRESHOLD = 50.0f;
+
+    private final ImageService imageService;
+    private final SecurityRepository securityRepository;
+    // registered listener -> the listener events are actually sent to, which is the same object for
+    // synchronous dispatch and a QueuedStatusListener wrapping it for queued dispatch
+    private final Map<StatusListener, StatusListener> statusListeners = new ConcurrentHashMap<>();
+    private volatile UnaryOperator<StatusListener> listenerDispatch = UnaryOperator.identity();
+
+    private final Striped<Lock> sensorLocks = Striped.lock(SENSOR_LOCK_STRIPES);
+    private final Lock alarmLock = new ReentrantLock();
+    private final Lock armingLock = new ReentrantLock();
+
+    // events waiting to be delivered; added under alarmLock, so in the order of the transitions
+    private final Queue<Consumer<StatusListener>> pendingEvents = new ConcurrentLinkedQueue<>();
+    private final Lock deliveryLock = new ReentrantLock();
 
-    private boolean catDetectedStatus;
+    private volatile boolean catDetectedStatus;
 
-    private ArmingStatus oldArmingStatus;
+    private volatile ArmingStatus oldArmingStatus;
+
+    private volatile Executor imageAnalysisExecutor;
+    private volatile Duration imageAnalysisTimeout = Duration.ofSeconds(30);
+    // images are numbered as they are submitted, so a slow analysis that finishes after a newer
+    // one cannot overwrite the newer verdict
+    private final AtomicLong imageSequence = new AtomicLong();
+    private long latestAppliedImage; // guarded by alarmLock
 
     public SecurityService(SecurityRepository securityRepository, ImageService imageService) {
         this.securityRepository = securityRepository;
@@ -43,26 +94,38 @@ public class SecurityService {
      * @param armingStatus
      */
     public void setArmingStatus(ArmingStatus armingStatus) {
-        if (armingStatus == ArmingStatus.DISARMED) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
-        }
+        armingLock.lock();
+        try {
+            if (armingStatus == ArmingStatus.DISARMED) {
+                alarmLock.lock();
+                try {
+                    updateAlarmStatus(AlarmStatus.NO_ALARM);
+                } finally {
+                    alarmLock.unlock();
+                }
+            }
 
-        this.setOldArmingStatus(securityRepository.getOldArmingStatus());
+            this.setOldArmingStatus(securityRepository.getOldArmingStatus());
 
-        securityRepository.setArmingStatus(armingStatus);
+            securityRepository.setArmingStatus(armingStatus);
 
-        // Check if a cat has been detected when arming status was DISARMED
-        if (getOldArmingStatus() == ArmingStatus.DISARMED) {
-            catDetected(getCatDetectedStatus());
-        }
+            // Check if a cat has been detected when arming status was DISARMED
+            if (getOldArmingStatus() == ArmingStatus.DISARMED) {
+                catDetected(getCatDetectedStatus());
+            }
 
-        if (List.of(ArmingStatus.ARMED_HOME, ArmingStatus.ARMED_AWAY).contains(armingStatus)) {
-            // Reset sensors to inactive
-            for (Sensor sensor : getSensors()) {
-                changeSensorActivationStatus(sensor, false);
+            if (List.of(ArmingStatus.ARMED_HOME, ArmingStatus.ARMED_AWAY).contains(armingStatus)) {
+                // Reset sensors to inactive, as one batch so the repository is written once
+                applySensorActivations(getSensors().stream()
+                        .filter(Sensor::getActive)
+                        .map(sensor -> new SensorActivation(sensor, false))
+                        .collect(Collectors.toList()));
             }
+            queueSensorStatusChanged();
+        } finally {
+            armingLock.unlock();
         }
-        statusListeners.forEach(StatusListener::sensorStatusChanged);
+        deliverPendingEvents();
     }
 
     /**
@@ -72,16 +135,20 @@ public class SecurityService {
      * @param cat True if a cat is detected, otherwise false.
      */
     private void catDetected(Boolean cat) {
-        setCatDetectedStatus(cat);
-        if (cat && getArmingStatus() == ArmingStatus.ARMED_HOME) {
-            setAlarmStatus(AlarmStatus.ALARM);
-        } else {
-            if (!hasActiveSensor()) {
-                setAlarmStatus(AlarmStatus.NO_ALARM);
-            }
-        }
+        alarmLock.lock();
+        try {
+            setCatDetectedStatus(cat);
+            transitionAlarmStatus(current -> {
+                if (cat && getArmingStatus() == ArmingStatus.ARMED_HOME) {
+                    return AlarmStatus.ALARM;
+                }
+                return hasActiveSensor() ? null : AlarmStatus.NO_ALARM;
+            });
 
-        statusListeners.forEach(sl -> sl.catDetected(cat));
+            pendingEvents.add(sl -> sl.catDetected(cat));
+        } finally {
+            alarmLock.unlock();
+        }
     }
 
     /**
@@ -90,11 +157,72 @@ public class SecurityService {
      * @param statusListener
      */
     public void addStatusListener(StatusListener statusListener) {
-        statusListeners.add(statusListener);
+        statusListeners.computeIfAbsent(statusListener, listenerDispatch);
     }
 
     public void removeStatusListener(StatusListener statusListener) {
-        statusListeners.remove(statusListener);
+        closeDispatchTarget(statusListeners.remove(statusListener));
+    }
+
+    /**
+     * Delivers events to every listener through its own bounded queue and delivery thread, so a
+     * slow listener no longer adds to the time it takes to evaluate the alarm. Each listener still
+     * sees events in order. Applies to listeners that are already registered as well.
+     *
+     * @param queueCapacity  how many undelivered events each listener may have
+     * @param overflowPolicy what to do with a new event when a listener's queue is full
+     */
+    public void useQueuedListenerDispatch(int queueCapacity, ListenerOverflowPolicy overflowPolicy) {
+        setListenerDispatch(listener -> new QueuedStatusListener(listener, queueCapacity, overflowPolicy).deferBlocking());
+    }
+
+    /**
+     * Like {@link #useQueuedListenerDispatch(int, ListenerOverflowPolicy)}, but every listener is
+     * called on the given executor, for example the Swing event thread. Events can then come from
+     * any thread, such as a finished image analysis, and still reach listeners on that executor.
+     */
+    public void useQueuedListenerDispatch(int queueCapacity, ListenerOverflowPolicy overflowPolicy, Executor executor) {
+        setListenerDispatch(listener -> new QueuedStatusListener(listener, queueCapacity, overflowPolicy, executor)
+                .deferBlocking());
+    }
+
+    /**
+     * Calls listeners directly on the thread that caused the event, which is the default. Stops the
+     * delivery threads of queued dispatch, after they have delivered what was already queued.
+     */
+    public void useSynchronousListenerDispatch() {
+        setListenerDispatch(UnaryOperator.identity());
+    }
+
+    private void setListenerDispatch(UnaryOperator<StatusListener> dispatch) {
+        alarmLock.lock();
+        try {
+            listenerDispatch = dispatch;
+            statusListeners.replaceAll((listener, target) -> {
+                closeDispatchTarget(target);
+                return dispatch.apply(listener);
+            });
+        } finally {
+            alarmLock.unlock();
+        }
+    }
+
+    private void closeDispatchTarget(StatusListener target) {
+        if (target instanceof QueuedStatusListener) {
+            ((QueuedStatusListener) target).close();
+        }
+    }
+
+    /**
+     * @return how far behind the given listener is, or {@link ListenerLag#NONE} if it is called
+     * synchronously or not registered
+     */
+    public ListenerLag getListenerLag(StatusListener statusListener) {
+        StatusListener target = statusListeners.get(statusListener);
+        if (target instanceof QueuedStatusListener) {
+            return ((QueuedStatusListener) target).getLag();
+        }
+        return ListenerLag.NONE;
     }
 
     /**
@@ -103,75 +231,336 @@ public class SecurityService {
      * @param status
      */
     public void setAlarmStatus(AlarmStatus status) {
+        alarmLock.lock();
+        try {
+            updateAlarmStatus(status);
+        } finally {
+            alarmLock.unlock();
+        }
+        deliverPendingEvents();
+    }
+
+    /**
+     * Queues the notification that sensors changed, in order with the alarm transitions.
+     */
+    private void queueSensorStatusChanged() {
+        alarmLock.lock();
+        try {
+            pendingEvents.add(StatusListener::sensorStatusChanged);
+        } finally {
+            alarmLock.unlock();
+        }
+    }
+
+    /**
+     * Stores the alarm status and queues the notification. Must be called holding alarmLock.
+     */
+    private void updateAlarmStatus(AlarmStatus status) {
         securityRepository.setAlarmStatus(status);
-        statusListeners.forEach(sl -> sl.notify(status));
+        pendingEvents.add(sl -> sl.notify(status));
     }
 
     /**
-     * Checks to see if any of the available sensors are active
+     * Delivers queued events to the listeners. Called after releasing every lock. Whichever thread
+     * gets the delivery lock delivers everything queued so far, so listeners see events in the
+     * order they happened; the emptiness check after unlocking picks up events queued by a thread
+     * that found the delivery lock taken. Delivering never waits for a listener: a thread whose
+     * events filled a blocking listener's queue waits for room afterwards, outside the delivery
+     * lock, so the others keep getting events and producers are held back before they can queue
+     * more.
+     */
+    private void deliverPendingEvents() {
+        while (!pendingEvents.isEmpty() && deliveryLock.tryLock()) {
+            try {
+                Consumer<StatusListener> event;
+                while ((event = pendingEvents.poll()) != null) {
+                    statusListeners.values().forEach(event);
+                }
+            } finally {
+                deliveryLock.unlock();
+            }
+        }
+        for (StatusListener target : statusListeners.values()) {
+            if (target instanceof QueuedStatusListener) {
+                ((QueuedStatusListener) target).awaitRoom();
+            }
+        }
+    }
+
+    /**
+     * Atomically reads the current alarm status, computes the next one and applies it. The
+     * transition may be evaluated while other threads are waiting to apply their own, so it
+     * must not have side effects.
+     *
+     * @param transition maps the current alarm status to the new one, or to null if the alarm
+     *                   status should be left alone
+     */
+    private void transitionAlarmStatus(UnaryOperator<AlarmStatus> transition) {
+        alarmLock.lock();
+        try {
+            AlarmStatus next = transition.apply(securityRepository.getAlarmStatus());
+            if (next != null) {
+                updateAlarmStatus(next);
+            }
+        } finally {
+            alarmLock.unlock();
+        }
+    }
+
+    /**
+     * Checks to see if any of the available sensors are active. Uses the repository's running
+     * count, so the cost does not depend on how many sensors there are.
      *
      * @return true if at least one sensor is active, false if all sensors are inactive
      */
     private boolean hasActiveSensor() {
-        return getSensors().stream().anyMatch(Sensor::getActive);
+        return securityRepository.getActiveSensorCount() > 0;
     }
 
     /**
      * Internal method for updating the alarm status when a sensor has been activated.
      */
     private void handleSensorActivated() {
-        if (getArmingStatus() == ArmingStatus.DISARMED) {
-            return; //no problem if the system is disarmed
-        }
-        switch (getAlarmStatus()) {
-            case NO_ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
-            case PENDING_ALARM -> setAlarmStatus(AlarmStatus.ALARM);
-        }
+        transitionAlarmStatus(current -> alarmStatusAfterActivation(current, getArmingStatus()));
     }
 
     /**
      * Internal method for updating the alarm status when a sensor has been deactivated
      */
     private void handleSensorDeactivated() {
-        switch (securityRepository.getAlarmStatus()) {
-            case PENDING_ALARM -> setAlarmStatus(AlarmStatus.NO_ALARM);
-//            case ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        transitionAlarmStatus(this::alarmStatusAfterDeactivation);
+    }
+
+    /**
+     * The alarm state machine step for a sensor activation.
+     *
+     * @return the new alarm status, or null if it does not change
+     */
+    private AlarmStatus alarmStatusAfterActivation(AlarmStatus current, ArmingStatus armingStatus) {
+        if (armingStatus == ArmingStatus.DISARMED) {
+            return null; //no problem if the system is disarmed
         }
+        return switch (current) {
+            case NO_ALARM -> AlarmStatus.PENDING_ALARM;
+            case PENDING_ALARM -> AlarmStatus.ALARM;
+            default -> null;
+        };
+    }
+
+    /**
+     * The alarm state machine step for an active sensor being deactivated.
+     *
+     * @return the new alarm status, or null if it does not change
+     */
+    private AlarmStatus alarmStatusAfterDeactivation(AlarmStatus current) {
+        return current == AlarmStatus.PENDING_ALARM ? AlarmStatus.NO_ALARM : null;
     }
 
     /**
      * Change the activation status for the specified sensor and update alarm status if necessary.
+     * Concurrent changes to the same sensor are applied one at a time.
      *
      * @param sensor
      * @param active
      */
     public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
-        if (active) {
-            handleSensorActivated();
-        } else if (sensor.getActive() && !active) {
-            handleSensorDeactivated();
+        Lock sensorLock = sensorLocks.get(sensor.getSensorId());
+        sensorLock.lock();
+        try {
+            boolean wasActive = sensor.getActive();
+            sensor.setActive(active);
+            securityRepository.updateSensor(sensor);
+            if (active) {
+                handleSensorActivated();
+            } else if (wasActive) {
+                handleSensorDeactivated();
+            }
+        } finally {
+            sensorLock.unlock();
+        }
+        deliverPendingEvents();
+    }
+
+    /**
+     * Applies several activation changes as one batch. The result is the same as calling
+     * {@link #changeSensorActivationStatus(Sensor, Boolean)} for each change in order, but the
+     * alarm state machine is evaluated in memory, the repository is written once and listeners
+     * are notified once for the whole batch.
+     *
+     * @param changes the activation changes, applied in iteration order
+     */
+    public void changeSensorActivationStatus(Collection<SensorActivation> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        applySensorActivations(changes);
+        queueSensorStatusChanged();
+        deliverPendingEvents();
+    }
+
+    /**
+     * Applies a batch of activation changes without telling listeners that sensors changed, so
+     * callers that send their own notification don't send it twice.
+     */
+    private void applySensorActivations(Collection<SensorActivation> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        // bulkGet hands back the stripes in a fixed order, so overlapping batches cannot deadlock
+        List<UUID> sensorIds = changes.stream().map(c -> c.getSensor().getSensorId()).collect(Collectors.toList());
+        Iterable<Lock> locks = sensorLocks.bulkGet(sensorIds);
+        locks.forEach(Lock::lock);
+        try {
+            Set<Sensor> changedSensors = new LinkedHashSet<>();
+            // which changes deactivate an active sensor, worked out in order before the sensors change
+            boolean[] deactivations = new boolean[changes.size()];
+            int i = 0;
+            for (SensorActivation change : changes) {
+                Sensor sensor = change.getSensor();
+                deactivations[i++] = !change.getActive() && sensor.getActive();
+                sensor.setActive(change.getActive());
+                changedSensors.add(sensor);
+            }
+            securityRepository.updateSensors(changedSensors);
+
+            // only the state machine runs under the alarm lock, stepped once per change in memory
+            alarmLock.lock();
+            try {
+                ArmingStatus armingStatus = getArmingStatus();
+                AlarmStatus alarmStatus = securityRepository.getAlarmStatus();
+                boolean alarmChanged = false;
+                i = 0;
+                for (SensorActivation change : changes) {
+                    AlarmStatus next = null;
+                    if (change.getActive()) {
+                        next = alarmStatusAfterActivation(alarmStatus, armingStatus);
+                    } else if (deactivations[i]) {
+                        next = alarmStatusAfterDeactivation(alarmStatus);
+                    }
+                    i++;
+                    if (next != null) {
+                        alarmStatus = next;
+                        alarmChanged = true;
+                    }
+                }
+                if (alarmChanged) {
+                    updateAlarmStatus(alarmStatus);
+                }
+            } finally {
+                alarmLock.unlock();
+            }
+        } finally {
+            locks.forEach(Lock::unlock);
         }
-        sensor.setActive(active);
-        securityRepository.updateSensor(sensor);
     }
 
     /**
      * Send an image to the SecurityService for processing. The securityService will use its provided
      * ImageService to analyze the image for cats and update the alarm status accordingly.
+     * The image analysis itself runs without holding any lock.
      *
      * @param currentCameraImage
      */
     public void processImage(BufferedImage currentCameraImage) {
-        catDetected(imageService.imageContainsCat(currentCameraImage, 50.0f));
+        long sequence = nextImageSequence();
+        applyImageResult(sequence, imageService.imageContainsCat(currentCameraImage, CAT_CONFIDENCE_THRESHOLD));
+    }
+
+    /**
+     * Sends an image for analysis without waiting for it. The result is applied to the alarm state
+     * when the analysis completes, unless the verdict on a newer image has been applied already.
+     * Cancelling the returned future stops the analysis; an analysis that takes longer than the
+     * configured timeout fails with a TimeoutException. Either way the alarm state is left alone.
+     *
+     * @return completes with the classifier's verdict once it has been handled, whether it was
+     * applied or dropped because a newer image had been applied first; callers that need to
+     * know the resulting state should read it from the service or a listener
+     */
+    public CompletableFuture<Boolean> processImageAsync(BufferedImage currentCameraImage) {
+        long sequence = nextImageSequence();
+        CompletableFuture<Boolean> analysis = imageService
+                .imageContainsCatAsync(currentCameraImage, CAT_CONFIDENCE_THRESHOLD, getImageAnalysisExecutor())
+                .orTimeout(imageAnalysisTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        CompletableFuture<Boolean> applied = analysis.thenApply(cat -> {
+            applyImageResult(sequence, cat);
+            return cat;
+        });
+        applied.whenComplete((cat, failure) -> {
+            if (applied.isCancelled()) {
+                analysis.cancel(true);
+            }
+        });
+        return applied;
+    }
+
+    /**
+     * @return the number of an image being submitted for analysis; images are numbered in
+     * submission order
+     */
+    long nextImageSequence() {
+        return imageSequence.incrementAndGet();
+    }
+
+    /**
+     * Applies the verdict on the image with the given number, unless the verdict on a newer
+     * image has been applied already.
+     */
+    void applyImageResult(long sequence, boolean cat) {
+        alarmLock.lock();
+        try {
+            if (sequence < latestAppliedImage) {
+                return;
+            }
+            latestAppliedImage = sequence;
+            catDetected(cat);
+        } finally {
+            alarmLock.unlock();
+        }
+        deliverPendingEvents();
+    }
+
+    private Executor getImageAnalysisExecutor() {
+        Executor executor = imageAnalysisExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                if (imageAnalysisExecutor == null) {
+                    imageAnalysisExecutor = ImageAnalysisExecutors.newDefaultExecutor();
+                }
+                executor = imageAnalysisExecutor;
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Sets the executor {@link #processImageAsync} analyzes images on. By default one is created
+     * on first use with {@link ImageAnalysisExecutors#newDefaultExecutor()}.
+     */
+    public void setImageAnalysisExecutor(Executor imageAnalysisExecutor) {
+        this.imageAnalysisExecutor = imageAnalysisExecutor;
+    }
+
+    /**
+     * Sets how long {@link #processImageAsync} waits for a verdict before giving up.
+     */
+    public void setImageAnalysisTimeout(Duration imageAnalysisTimeout) {
+        this.imageAnalysisTimeout = imageAnalysisTimeout;
     }
 
     public AlarmStatus getAlarmStatus() {
         return securityRepository.getAlarmStatus();
     }
 
+    /**
+     * @return the repository's current immutable snapshot of the sensors, in sensor order. It is
+     * safe to iterate while sensors change, so no defensive copy is needed.
+     */
     public Set<Sensor> getSensors() {
-        // Fixes the ConcurrentModificationException
-        return new TreeSet<>(securityRepository.getSensors());
+        return securityRepository.getSensors();
+    }
+
+    public SensorSnapshot getSensorSnapshot() {
+        return securityRepository.getSensorSnapshot();
     }
 
     public void addSensor(Sensor sensor) {
@@ -182,10 +571,27 @@ public class SecurityService {
         securityRepository.removeSensor(sensor);
     }
 
+    /**
+     * Removes several sensors, writing the repository once for all of them.
+     */
+    public void removeSensors(Collection<Sensor> sensors) {
+        if (!sensors.isEmpty()) {
+            securityRepository.removeSensors(sensors);
+        }
+    }
+
     public ArmingStatus getArmingStatus() {
         return securityRepository.getArmingStatus();
     }
 
+    public int getActiveSensorCount() {
+        return securityRepository.getActiveSensorCount();
+    }
+
+    public int getActiveSensorCount(SensorType sensorType) {
+        return securityRepository.getActiveSensorCount(sensorType);
+    }
+
     public void setOldArmingStatus(ArmingStatus armingStatus) {
         this.oldArmingStatus = armingStatus;
     }
@@ -5,6 +5,7 @@ module com.udacity.catpoint.securityservice {
     requires gson;
     requires java.desktop;
     requires java.sql;
+    requires org.slf4j;
 
     exports com.udacity.catpoint.security.service;
     exports com.udacity.catpoint.security.data;
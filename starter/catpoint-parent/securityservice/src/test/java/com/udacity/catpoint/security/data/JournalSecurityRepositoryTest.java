@@ -0,0 +1,239 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that the journal repository comes back with the state it had when it was closed.
+ */
+public class JournalSecurityRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void reopenedRepository_replaysJournal() throws IOException {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        try (JournalSecurityRepository repository = new JournalSecurityRepository(directory)) {
+            repository.addSensor(door);
+            repository.addSensor(window);
+            door.setActive(true);
+            repository.updateSensor(door);
+            repository.removeSensor(window);
+            repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+            repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        }
+
+        try (JournalSecurityRepository repository = new JournalSecurityRepository(directory)) {
+            Set<Sensor> sensors = repository.getSensors();
+            assertEquals(Set.of(door), sensors);
+            Sensor restored = sensors.iterator().next();
+            assertEquals("Door", restored.getName());
+            assertEquals(SensorType.DOOR, restored.getSensorType());
+            assertTrue(restored.getActive());
+            assertEquals(1, repository.getActiveSensorCount());
+            assertEquals(ArmingStatus.ARMED_HOME, repository.getArmingStatus());
+            assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+        }
+    }
+
+    @Test
+    public void removedSensors_stayRemovedAfterReopening() throws IOException {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW, true);
+        Sensor motion = new Sensor("Motion", SensorType.MOTION, true);
+        try (JournalSecurityRepository repository = new JournalSecurityRepository(directory)) {
+            repository.updateSensors(List.of(door, window, motion));
+            repository.removeSensors(List.of(window, motion));
+            assertEquals(Set.of(door), repository.getSensors());
+            assertEquals(0, repository.getActiveSensorCount());
+        }
+
+        try (JournalSecurityRepository repository = new JournalSecurityRepository(directory)) {
+            assertEquals(Set.of(door), repository.getSensors());
+            assertEquals(0, repository.getActiveSensorCount());
+        }
+    }
+
+    @Test
+    public void changesToClosedRepository_areRefused_andLeaveStateAsItWas() throws IOException {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        JournalSecurityRepository repository = new JournalSecurityRepository(directory);
+        repository.addSensor(door);
+        repository.close();
+
+        assertThrows(IllegalStateException.class, () -> repository.addSensor(new Sensor("Window", SensorType.WINDOW)));
+        assertThrows(IllegalStateException.class, () -> repository.removeSensor(door));
+        assertThrows(IllegalStateException.class, () -> repository.setArmingStatus(ArmingStatus.ARMED_AWAY));
+        assertEquals(Set.of(door), repository.getSensors());
+        assertEquals(ArmingStatus.DISARMED, repository.getArmingStatus());
+    }
+
+    @Test
+    public void compaction_emptiesJournal_andKeepsState() throws IOException {
+        Sensor door = new Sensor("Door", SensorType.DOOR, true);
+        Sensor motion = new Sensor("Motion", SensorType.MOTION);
+        try (JournalSecurityRepository repository = new JournalSecurityRepository(directory)) {
+            repository.updateSensors(List.of(door, motion));
+            repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            repository.compact();
+            assertEquals(0, Files.size(directory.resolve(JournalSecurityRepository.JOURNAL_FILE)));
+            motion.setActive(true);
+            repository.updateSensor(motion);
+        }
+
+        try (JournalSecurityRepository repository = new JournalSecurityRepository(directory)) {
+            assertEquals(Set.of(door, motion), repository.getSensors());
+            assertEquals(2, repository.getActiveSensorCount());
+            assertEquals(ArmingStatus.ARMED_AWAY, repository.getArmingStatus());
+        }
+    }
+
+    @Test
+    public void changesDuringCompaction_areKept() throws Exception {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            sensors.add(new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]));
+        }
+        try (JournalSecurityRepository repository = new JournalSecurityRepository(directory)) {
+            repository.updateSensors(sensors);
+            Thread compactor = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 20; i++) {
+                        repository.compact();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            compactor.start();
+            for (Sensor sensor : sensors) {
+                sensor.setActive(true);
+                repository.updateSensor(sensor);
+            }
+            compactor.join();
+        }
+
+        try (JournalSecurityRepository repository = new JournalSecurityRepository(directory)) {
+            assertEquals(sensors.size(), repository.getActiveSensorCount());
+            assertFalse(Files.exists(directory.resolve(JournalSecurityRepository.NEXT_JOURNAL_FILE)));
+        }
+    }
+
+    @Test
+    public void interruptedCompaction_replaysBothJournals() throws IOException {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        Path other = directory.resolve("other");
+        try (JournalSecurityRepository repository = new JournalSecurityRepository(directory)) {
+            repository.addSensor(door);
+        }
+        try (JournalSecurityRepository repository = new JournalSecurityRepository(other)) {
+            repository.addSensor(window);
+            repository.removeSensor(door);
+            repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        }
+        // as if the process died while a compaction had switched to the fresh journal
+        Files.move(other.resolve(JournalSecurityRepository.JOURNAL_FILE),
+                directory.resolve(JournalSecurityRepository.NEXT_JOURNAL_FILE));
+
+        try (JournalSecurityRepository repository = new JournalSecurityRepository(directory)) {
+            assertEquals(Set.of(window), repository.getSensors());
+            assertEquals(ArmingStatus.ARMED_HOME, repository.getArmingStatus());
+            assertFalse(Files.exists(directory.resolve(JournalSecurityRepository.NEXT_JOURNAL_FILE)));
+        }
+        try (JournalSecurityRepository repository = new JournalSecurityRepository(directory)) {
+            assertEquals(Set.of(window), repository.getSensors());
+        }
+    }
+
+    @Test
+    public void version1Files_areStillRead() throws IOException {
+        Sensor door = new Sensor("Door", SensorType.DOOR, true);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        ByteBuffer snapshot = ByteBuffer.allocate(256);
+        snapshot.putInt(0x43505353).put((byte) 1);
+        snapshot.put((byte) AlarmStatus.ALARM.ordinal()).put((byte) ArmingStatus.ARMED_HOME.ordinal());
+        snapshot.putInt(1);
+        putFixedSensor(snapshot, door);
+        CRC32 crc = new CRC32();
+        crc.update(snapshot.duplicate().flip());
+        snapshot.putInt((int) crc.getValue()).flip();
+        Files.write(directory.resolve(JournalSecurityRepository.SNAPSHOT_FILE), toBytes(snapshot));
+
+        ByteBuffer record = ByteBuffer.allocate(64);
+        record.put((byte) 1);
+        putFixedSensor(record, window);
+        record.flip();
+        crc.reset();
+        crc.update(record.duplicate());
+        ByteBuffer frame = ByteBuffer.allocate(8 + record.remaining());
+        frame.putInt(record.remaining()).putInt((int) crc.getValue()).put(record).flip();
+        Files.write(directory.resolve(JournalSecurityRepository.JOURNAL_FILE), toBytes(frame));
+
+        try (JournalSecurityRepository repository = new JournalSecurityRepository(directory)) {
+            assertEquals(Set.of(door, window), repository.getSensors());
+            assertEquals("Window", repository.getSensor(window.getSensorId()).getName());
+            assertEquals(1, repository.getActiveSensorCount());
+            assertEquals(AlarmStatus.ALARM, repository.getAlarmStatus());
+            assertEquals(ArmingStatus.ARMED_HOME, repository.getArmingStatus());
+            repository.compact();
+        }
+        try (JournalSecurityRepository repository = new JournalSecurityRepository(directory)) {
+            assertEquals(Set.of(door, window), repository.getSensors());
+            assertEquals(1, repository.getActiveSensorCount());
+        }
+    }
+
+    private static void putFixedSensor(ByteBuffer out, Sensor sensor) {
+        byte[] name = sensor.getName().getBytes(StandardCharsets.UTF_8);
+        out.putLong(sensor.getSensorId().getMostSignificantBits());
+        out.putLong(sensor.getSensorId().getLeastSignificantBits());
+        out.put((byte) sensor.getSensorType().ordinal());
+        out.put((byte) (sensor.getActive() ? 1 : 0));
+        out.putShort((short) name.length);
+        out.put(name);
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void tornRecordAtTheEnd_isDiscarded() throws IOException {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        JournalPolicy syncEveryRecord = new JournalPolicy(1, Duration.ZERO, 1000);
+        try (JournalSecurityRepository repository = new JournalSecurityRepository(directory, syncEveryRecord)) {
+            repository.addSensor(door);
+        }
+        Path journalFile = directory.resolve(JournalSecurityRepository.JOURNAL_FILE);
+        long intactSize = Files.size(journalFile);
+        try (FileChannel journal = FileChannel.open(journalFile, StandardOpenOption.APPEND)) {
+            journal.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2}));
+        }
+
+        try (JournalSecurityRepository repository = new JournalSecurityRepository(directory, syncEveryRecord)) {
+            assertEquals(Set.of(door), repository.getSensors());
+            assertEquals(intactSize, Files.size(journalFile));
+        }
+    }
+}
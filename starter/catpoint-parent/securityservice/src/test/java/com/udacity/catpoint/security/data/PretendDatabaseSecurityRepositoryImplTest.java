@@ -0,0 +1,195 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.prefs.AbstractPreferences;
+import java.util.prefs.BackingStoreException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the write-behind mode of the preferences repository, run against an in-memory
+ * preferences node so nothing reaches the user's real store.
+ */
+public class PretendDatabaseSecurityRepositoryImplTest {
+
+    private static final String SENSOR_DATA = "SENSOR_DATA0";
+    private static final String ALARM_STATUS = "ALARM_STATUS";
+
+    private final MemoryPreferences prefs = new MemoryPreferences();
+
+    @Test
+    public void writeBehind_coalescesChangesIntoOneWrite() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(
+                new WriteBehindPolicy(Duration.ofHours(1), 100), prefs);
+        try {
+            repository.addSensor(door);
+            for (int i = 0; i < 10; i++) {
+                door.setActive(i % 2 == 0);
+                repository.updateSensor(door);
+            }
+            repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+            assertEquals(0, prefs.writesOf(SENSOR_DATA));
+
+            repository.flush();
+
+            assertEquals(1, prefs.writesOf(SENSOR_DATA));
+            assertEquals(1, prefs.writesOf(ALARM_STATUS));
+        } finally {
+            repository.close();
+        }
+    }
+
+    @Test
+    public void maxDirtyChanges_writesInBackground() throws InterruptedException {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(
+                new WriteBehindPolicy(Duration.ofHours(1), 3), prefs);
+        try {
+            repository.addSensor(new Sensor("Door", SensorType.DOOR));
+            repository.addSensor(new Sensor("Window", SensorType.WINDOW));
+            repository.setAlarmStatus(AlarmStatus.ALARM);
+
+            assertTrue(prefs.awaitWrite(ALARM_STATUS, Duration.ofSeconds(1)));
+            assertEquals(1, prefs.writesOf(SENSOR_DATA));
+            assertEquals(0, prefs.flushes.get());
+        } finally {
+            repository.close();
+        }
+    }
+
+    @Test
+    public void close_writesPendingChanges_andRejectsLaterOnes() {
+        Sensor door = new Sensor("Door", SensorType.DOOR, true);
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(
+                new WriteBehindPolicy(Duration.ofHours(1), 100), prefs);
+        repository.addSensor(door);
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        repository.close();
+
+        assertEquals(1, prefs.flushes.get());
+        assertThrows(IllegalStateException.class, () -> repository.setAlarmStatus(AlarmStatus.ALARM));
+        assertEquals(Set.of(door), repository.getSensors());
+
+        PretendDatabaseSecurityRepositoryImpl reopened = new PretendDatabaseSecurityRepositoryImpl(null, prefs);
+        assertEquals(Set.of(door), reopened.getSensors());
+        assertEquals(ArmingStatus.ARMED_AWAY, reopened.getArmingStatus());
+        assertEquals(AlarmStatus.NO_ALARM, reopened.getAlarmStatus());
+        reopened.close();
+    }
+
+    @Test
+    public void failedBackgroundWrite_isRetried() throws InterruptedException {
+        prefs.failingWrites.set(1);
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(
+                new WriteBehindPolicy(Duration.ofMillis(20), 100), prefs);
+        try {
+            repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+
+            assertTrue(prefs.awaitWrite(ALARM_STATUS, Duration.ofSeconds(1)));
+            assertEquals(AlarmStatus.PENDING_ALARM.toString(), prefs.get(ALARM_STATUS, null));
+        } finally {
+            repository.close();
+        }
+    }
+
+    @Test
+    public void failedFlush_isLogged_notThrown() {
+        prefs.failFlush = true;
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(
+                new WriteBehindPolicy(Duration.ofHours(1), 100), prefs);
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+
+        assertDoesNotThrow(repository::close);
+        assertEquals(AlarmStatus.ALARM.toString(), prefs.get(ALARM_STATUS, null));
+    }
+
+    /**
+     * Preferences root kept in a map, counting writes per key. Writes can be made to fail.
+     */
+    private static final class MemoryPreferences extends AbstractPreferences {
+        private final Map<String, String> values = new ConcurrentHashMap<>();
+        private final List<String> writes = new CopyOnWriteArrayList<>();
+        private final AtomicInteger failingWrites = new AtomicInteger();
+        private final AtomicInteger flushes = new AtomicInteger();
+        private volatile boolean failFlush;
+
+        MemoryPreferences() {
+            super(null, "");
+        }
+
+        int writesOf(String key) {
+            return (int) writes.stream().filter(key::equals).count();
+        }
+
+        boolean awaitWrite(String key, Duration timeout) throws InterruptedException {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            while (writesOf(key) == 0) {
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+                Thread.sleep(5);
+            }
+            return true;
+        }
+
+        @Override
+        protected void putSpi(String key, String value) {
+            if (failingWrites.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                throw new IllegalStateException("store unavailable");
+            }
+            values.put(key, value);
+            writes.add(key);
+        }
+
+        @Override
+        protected String getSpi(String key) {
+            return values.get(key);
+        }
+
+        @Override
+        protected void removeSpi(String key) {
+            values.remove(key);
+        }
+
+        @Override
+        protected void removeNodeSpi() {
+            values.clear();
+        }
+
+        @Override
+        protected String[] keysSpi() {
+            return values.keySet().toArray(new String[0]);
+        }
+
+        @Override
+        protected String[] childrenNamesSpi() {
+            return new String[0];
+        }
+
+        @Override
+        protected AbstractPreferences childSpi(String name) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void syncSpi() {
+        }
+
+        @Override
+        protected void flushSpi() throws BackingStoreException {
+            flushes.incrementAndGet();
+            if (failFlush) {
+                throw new BackingStoreException("store unavailable");
+            }
+        }
+    }
+}
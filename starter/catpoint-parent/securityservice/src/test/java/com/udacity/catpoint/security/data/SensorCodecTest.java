@@ -0,0 +1,86 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round-trip tests for the binary and JSON sensor encodings.
+ */
+public class SensorCodecTest {
+
+    private final List<Sensor> sensors = List.of(
+            new Sensor("Front Door", SensorType.DOOR, true),
+            new Sensor("Kitchen Window", SensorType.WINDOW, false),
+            new Sensor("Front Door", SensorType.MOTION, false));
+
+    private static void assertSameSensors(List<Sensor> expected, List<Sensor> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getSensorId(), actual.get(i).getSensorId());
+            assertEquals(expected.get(i).getName(), actual.get(i).getName());
+            assertEquals(expected.get(i).getSensorType(), actual.get(i).getSensorType());
+            assertEquals(expected.get(i).getActive(), actual.get(i).getActive());
+        }
+    }
+
+    @Test
+    public void sensorSet_roundTrips_andSharesRepeatedNames() {
+        List<Sensor> decoded = SensorCodec.decode(SensorCodec.encode(sensors));
+
+        assertSameSensors(sensors, decoded);
+        assertSame(decoded.get(0).getName(), decoded.get(2).getName());
+    }
+
+    @Test
+    public void singleSensor_roundTrips() {
+        ByteBuffer buffer = ByteBuffer.allocate(SensorCodec.maxEncodedSize(sensors.get(0)));
+        SensorCodec.writeSensor(buffer, sensors.get(0));
+        buffer.flip();
+
+        assertSameSensors(sensors.subList(0, 1), List.of(SensorCodec.readSensor(buffer)));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void json_roundTrips() {
+        assertSameSensors(sensors, SensorCodec.fromJson(SensorCodec.toJson(sensors)));
+    }
+
+    @Test
+    public void liveSet_growingBetweenReads_isEncodedFromOneRead() {
+        // a view onto a set another thread keeps adding to: every read sees one more sensor
+        List<Sensor> backing = new ArrayList<>(sensors);
+        Collection<Sensor> live = new AbstractCollection<>() {
+            @Override
+            public Iterator<Sensor> iterator() {
+                List<Sensor> seen = List.copyOf(backing);
+                backing.add(new Sensor("Added " + backing.size(), SensorType.WINDOW));
+                return seen.iterator();
+            }
+
+            @Override
+            public int size() {
+                return backing.size();
+            }
+        };
+
+        assertSameSensors(sensors, SensorCodec.decode(SensorCodec.encode(live)));
+    }
+
+    @Test
+    public void truncatedData_isRejected() {
+        byte[] encoded = SensorCodec.encode(sensors);
+        byte[] truncated = new byte[encoded.length - 3];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+
+        assertThrows(IllegalArgumentException.class, () -> SensorCodec.decode(truncated));
+    }
+}
@@ -0,0 +1,78 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that the registry's indexes follow sensors that are changed in place.
+ */
+public class SensorRegistryTest {
+
+    private final SensorRegistry registry = new SensorRegistry();
+
+    @Test
+    public void indexes_followInPlaceChanges() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        registry.put(door);
+
+        door.setActive(true);
+        door.setSensorType(SensorType.WINDOW);
+        registry.put(door);
+
+        assertSame(door, registry.get(door.getSensorId()));
+        assertEquals(Set.of(), registry.getSensors(SensorType.DOOR));
+        assertEquals(Set.of(door), registry.getSensors(SensorType.WINDOW));
+        assertEquals(Set.of(door), registry.getActiveSensors());
+        assertEquals(0, registry.getActiveCount(SensorType.DOOR));
+        assertEquals(1, registry.getActiveCount(SensorType.WINDOW));
+
+        registry.remove(door);
+        assertNull(registry.get(door.getSensorId()));
+        assertEquals(0, registry.getActiveCount());
+    }
+
+    @Test
+    public void snapshot_isRebuiltOnlyWhenOrderCanChange() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        registry.put(window);
+        registry.put(door);
+        SensorSnapshot sorted = registry.getSnapshot();
+        assertEquals(List.of(door, window), List.copyOf(sorted.getSensors()));
+
+        door.setActive(true);
+        registry.put(door);
+        assertSame(sorted, registry.getSnapshot());
+
+        door.setName("Zone Door");
+        registry.put(door);
+        assertEquals(List.of(window, door), List.copyOf(registry.getSnapshot().getSensors()));
+    }
+
+    @Test
+    public void sensorRenamedBehindRegistry_canStillBeFoundInSnapshot() {
+        Sensor attic = new Sensor("Attic", SensorType.MOTION);
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor hall = new Sensor("Hall", SensorType.MOTION);
+        Sensor kitchen = new Sensor("Kitchen", SensorType.WINDOW);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        List.of(window, kitchen, hall, door, attic).forEach(registry::put);
+        SensorSnapshot snapshot = registry.getSnapshot();
+
+        door.setName("Zone Door");
+
+        assertTrue(snapshot.getSensors().contains(door));
+        assertEquals(List.of(attic, door, hall, kitchen, window), List.copyOf(snapshot.getSensors()));
+        SortedSet<Sensor> copy = new TreeSet<>(snapshot.getSensors());
+        assertTrue(copy.remove(door));
+
+        registry.put(door);
+        assertEquals(List.of(attic, hall, kitchen, window, door), List.copyOf(registry.getSnapshot().getSensors()));
+    }
+}
@@ -0,0 +1,170 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.FakeSecurityRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests per-camera state, the combined verdict and scheduling within the budget.
+ */
+public class CameraRegistryTest {
+
+    private final BufferedImage catImage = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+    private final BufferedImage emptyImage = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+    private final BufferedImage blockingImage = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<BufferedImage> classified = new CopyOnWriteArrayList<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final ImageService classifier = (image, threshold) -> {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+            if (image == blockingImage) {
+                release.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running.decrementAndGet();
+        }
+        classified.add(image);
+        return image == catImage;
+    };
+
+    private SecurityService securityService;
+    private CameraRegistry registry;
+
+    @BeforeEach
+    void init() {
+        securityService = new SecurityService(new FakeSecurityRepository(), classifier);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        registry.close();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private CameraRegistry registry(int maxConcurrency, Duration positivePriority) {
+        registry = new CameraRegistry(securityService, classifier,
+                new ClassificationBudget(1000, maxConcurrency, positivePriority));
+        return registry;
+    }
+
+    @Test
+    void catOnAnyCamera_raisesAlarm_untilEveryCameraIsClear() throws InterruptedException {
+        registry(2, Duration.ZERO);
+        registry.addCamera("door");
+        registry.addCamera("garden");
+
+        registry.pushFrame(CameraFrame.decoded("door", 1, catImage));
+        registry.pushFrame(CameraFrame.decoded("garden", 1, emptyImage));
+        await(() -> classified.size() == 2);
+        await(() -> securityService.getAlarmStatus() == AlarmStatus.ALARM);
+        assertTrue(registry.isCatDetected());
+        assertEquals(Boolean.TRUE, registry.getCameraStatus("door").getCatDetected());
+        assertEquals(Boolean.FALSE, registry.getCameraStatus("garden").getCatDetected());
+
+        registry.pushFrame(CameraFrame.decoded("door", 2, emptyImage));
+        await(() -> !securityService.getCatDetectedStatus());
+        assertFalse(registry.isCatDetected());
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    void removingPositiveCamera_clearsItsVerdict() throws InterruptedException {
+        registry(1, Duration.ZERO);
+        registry.addCamera("door");
+        registry.pushFrame(CameraFrame.decoded("door", 1, catImage));
+        await(registry::isCatDetected);
+
+        registry.removeCamera("door");
+        assertFalse(registry.isCatDetected());
+        assertFalse(securityService.getCatDetectedStatus());
+        assertNull(registry.getCameraStatus("door"));
+    }
+
+    @Test
+    void newerFrame_replacesWaitingFrame() throws InterruptedException {
+        registry(1, Duration.ZERO);
+        registry.addCamera("door");
+        registry.pushFrame(CameraFrame.decoded("door", 1, blockingImage));
+        await(() -> running.get() == 1);
+
+        registry.pushFrame(CameraFrame.decoded("door", 2, catImage));
+        registry.pushFrame(CameraFrame.decoded("door", 3, emptyImage));
+        release.countDown();
+        await(() -> registry.getCameraStatus("door").getFramesClassified() == 2);
+
+        assertEquals(List.of(blockingImage, emptyImage), classified);
+        assertEquals(3, registry.getCameraStatus("door").getFramesReceived());
+        assertEquals(1, registry.getCameraStatus("door").getFramesReplaced());
+    }
+
+    @Test
+    void classification_staysWithinConcurrencyBudget() throws InterruptedException {
+        registry(2, Duration.ZERO);
+        for (int i = 0; i < 4; i++) {
+            registry.addCamera("camera" + i);
+            registry.pushFrame(CameraFrame.decoded("camera" + i, 1, blockingImage));
+        }
+        await(() -> running.get() == 2);
+        Thread.sleep(50);
+        assertEquals(2, running.get());
+
+        release.countDown();
+        await(() -> classified.size() == 4);
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    void cameraThatSawCat_goesFirst() throws InterruptedException {
+        registry(1, Duration.ofSeconds(10));
+        registry.addCamera("door");
+        registry.addCamera("garden");
+        registry.addCamera("hall");
+        registry.pushFrame(CameraFrame.decoded("door", 1, catImage));
+        await(registry::isCatDetected);
+
+        registry.pushFrame(CameraFrame.decoded("hall", 2, blockingImage));
+        await(() -> running.get() == 1);
+        registry.pushFrame(CameraFrame.decoded("garden", 2, emptyImage));
+        registry.pushFrame(CameraFrame.decoded("door", 2, catImage));
+        release.countDown();
+        await(() -> classified.size() == 4);
+
+        // door's frame arrived last but its camera last saw a cat
+        assertEquals(List.of(catImage, blockingImage, catImage, emptyImage), classified);
+    }
+
+    @Test
+    void frameFromUnknownCamera_isRefused() {
+        registry(1, Duration.ZERO);
+        assertThrows(IllegalArgumentException.class,
+                () -> registry.pushFrame(CameraFrame.decoded("attic", 1, emptyImage)));
+    }
+}
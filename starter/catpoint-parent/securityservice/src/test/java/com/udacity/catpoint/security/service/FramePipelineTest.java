@@ -0,0 +1,164 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.FakeSecurityRepository;
+import com.udacity.catpoint.security.data.StatusListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests ordering, backpressure and failure handling of the frame pipeline.
+ */
+public class FramePipelineTest {
+
+    private final BufferedImage catImage = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+    private final BufferedImage emptyImage = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+    private final CountDownLatch releaseCatFrames = new CountDownLatch(1);
+    private final ImageService slowOnCats = (image, threshold) -> {
+        if (image == catImage) {
+            try {
+                releaseCatFrames.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }
+        return false;
+    };
+
+    private SecurityService securityService;
+    private FramePipeline pipeline;
+
+    @BeforeEach
+    void init() {
+        FakeSecurityRepository repository = new FakeSecurityRepository();
+        securityService = new SecurityService(repository, slowOnCats);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseCatFrames.countDown();
+        pipeline.close();
+    }
+
+    private void awaitWaitingForApply(int frames) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pipeline.getStats().getWaitingForApply() != frames && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(frames, pipeline.getStats().getWaitingForApply());
+    }
+
+    @Test
+    public void verdicts_areAppliedInSubmissionOrder() throws InterruptedException {
+        pipeline = new FramePipeline(securityService, slowOnCats, 2, 4);
+
+        pipeline.submit(CameraFrame.decoded("front", 1, catImage));
+        pipeline.submit(CameraFrame.decoded("back", 2, emptyImage));
+        awaitWaitingForApply(1);
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+
+        releaseCatFrames.countDown();
+        assertTrue(pipeline.awaitIdle(Duration.ofSeconds(5)));
+
+        // the cat frame was applied first, then cleared by the later empty frame
+        assertFalse(securityService.getCatDetectedStatus());
+        assertEquals(2, pipeline.getStats().getProcessed(FrameStage.APPLY));
+    }
+
+    @Test
+    public void frameCapturedBeforeAppliedFrameOfSameSource_isDropped() throws InterruptedException {
+        pipeline = new FramePipeline(securityService, slowOnCats, 1, 4);
+        releaseCatFrames.countDown();
+
+        pipeline.submit(CameraFrame.decoded("front", 2, emptyImage));
+        pipeline.submit(CameraFrame.decoded("front", 1, catImage));
+        assertTrue(pipeline.awaitIdle(Duration.ofSeconds(5)));
+
+        assertEquals(1, pipeline.getStats().getStaleFrames());
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void otherSourceWithSkewedClock_isNotDropped() throws InterruptedException {
+        pipeline = new FramePipeline(securityService, slowOnCats, 1, 4);
+        releaseCatFrames.countDown();
+
+        // the back camera's clock runs a few milliseconds behind the front one
+        pipeline.submit(CameraFrame.decoded("front", 1_000, emptyImage));
+        pipeline.submit(CameraFrame.decoded("back", 995, catImage));
+        assertTrue(pipeline.awaitIdle(Duration.ofSeconds(5)));
+
+        assertEquals(0, pipeline.getStats().getStaleFrames());
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void verdicts_areAppliedWithoutReorderLockHeld() throws InterruptedException {
+        pipeline = new FramePipeline(securityService, slowOnCats, 2, 4);
+        releaseCatFrames.countDown();
+        CountDownLatch statsRead = new CountDownLatch(1);
+        securityService.addStatusListener(new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                // reading the stats needs the reorder lock, from another thread so a reentrant
+                // lock would not hide the problem
+                Thread reader = new Thread(() -> {
+                    pipeline.getStats();
+                    statsRead.countDown();
+                });
+                reader.start();
+                try {
+                    statsRead.await(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+            }
+        });
+
+        pipeline.submit(CameraFrame.decoded("front", 1, catImage));
+        assertTrue(pipeline.awaitIdle(Duration.ofSeconds(5)));
+
+        assertEquals(0, statsRead.getCount());
+    }
+
+    @Test
+    public void fullPipeline_refusesOffer() throws InterruptedException {
+        pipeline = new FramePipeline(securityService, slowOnCats, 1, 1);
+
+        pipeline.submit(CameraFrame.decoded("front", 1, catImage));
+
+        assertFalse(pipeline.offer(CameraFrame.decoded("front", 2, emptyImage), Duration.ofMillis(20)));
+    }
+
+    @Test
+    public void undecodableFrame_isCountedAsFailed() throws InterruptedException {
+        pipeline = new FramePipeline(securityService, slowOnCats, 1, 2);
+
+        pipeline.submit(CameraFrame.encoded("front", 1, new byte[]{1, 2, 3}));
+        pipeline.submit(CameraFrame.decoded("front", 2, emptyImage));
+        assertTrue(pipeline.awaitIdle(Duration.ofSeconds(5)));
+
+        assertEquals(1, pipeline.getStats().getFailedFrames());
+        assertEquals(1, pipeline.getStats().getProcessed(FrameStage.APPLY));
+    }
+}
@@ -0,0 +1,139 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.StatusListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the per-listener event queue. Delivery runs on a manual executor so each test
+ * decides when the listener catches up.
+ */
+public class QueuedStatusListenerTest {
+
+    private final Queue<Runnable> pendingTasks = new ArrayDeque<>();
+    private final Executor manualExecutor = pendingTasks::add;
+    private final List<String> received = new ArrayList<>();
+
+    private StatusListener recordingListener;
+
+    @BeforeEach
+    void init() {
+        recordingListener = new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                received.add(status.name());
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+                received.add("cat=" + catDetected);
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+                received.add("sensors");
+            }
+        };
+    }
+
+    private void runPendingTasks() {
+        while (!pendingTasks.isEmpty()) {
+            pendingTasks.poll().run();
+        }
+    }
+
+    @Test
+    public void events_areDeliveredInOrder_onTheListenersExecutor() {
+        QueuedStatusListener queued = new QueuedStatusListener(recordingListener, 10, ListenerOverflowPolicy.BLOCK, manualExecutor);
+
+        queued.notify(AlarmStatus.PENDING_ALARM);
+        queued.catDetected(true);
+        queued.notify(AlarmStatus.ALARM);
+
+        // nothing is delivered on the sending thread
+        assertTrue(received.isEmpty());
+        assertEquals(3, queued.getLag().getQueuedEvents());
+
+        runPendingTasks();
+
+        assertEquals(List.of("PENDING_ALARM", "cat=true", "ALARM"), received);
+        assertEquals(0, queued.getLag().getQueuedEvents());
+        assertEquals(3, queued.getLag().getDeliveredEvents());
+    }
+
+    @Test
+    public void dropOldest_discardsOldestEvent_whenQueueIsFull() {
+        QueuedStatusListener queued = new QueuedStatusListener(recordingListener, 2, ListenerOverflowPolicy.DROP_OLDEST, manualExecutor);
+
+        queued.notify(AlarmStatus.NO_ALARM);
+        queued.notify(AlarmStatus.PENDING_ALARM);
+        queued.notify(AlarmStatus.ALARM);
+        runPendingTasks();
+
+        assertEquals(List.of("PENDING_ALARM", "ALARM"), received);
+        assertEquals(1, queued.getLag().getDroppedEvents());
+    }
+
+    @Test
+    public void coalesce_replacesNewestQueuedEvent_whenItIsOfSameKind() {
+        QueuedStatusListener queued = new QueuedStatusListener(recordingListener, 2, ListenerOverflowPolicy.COALESCE, manualExecutor);
+
+        queued.notify(AlarmStatus.PENDING_ALARM);
+        queued.catDetected(false);
+        queued.catDetected(true);
+        runPendingTasks();
+
+        assertEquals(List.of("PENDING_ALARM", "cat=true"), received);
+        assertEquals(1, queued.getLag().getCoalescedEvents());
+        assertEquals(0, queued.getLag().getDroppedEvents());
+    }
+
+    @Test
+    public void coalesce_neverMovesEventPastOneOfAnotherKind() {
+        QueuedStatusListener queued = new QueuedStatusListener(recordingListener, 2, ListenerOverflowPolicy.COALESCE, manualExecutor);
+
+        queued.notify(AlarmStatus.PENDING_ALARM);
+        queued.catDetected(false);
+        queued.notify(AlarmStatus.ALARM);
+        runPendingTasks();
+
+        // the queued alarm status is not replaced, as that would deliver it after the cat verdict
+        assertEquals(List.of("cat=false", "ALARM"), received);
+        assertEquals(0, queued.getLag().getCoalescedEvents());
+        assertEquals(1, queued.getLag().getDroppedEvents());
+    }
+
+    @Test
+    public void executorShutDown_dropsEventsInsteadOfThrowing() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        QueuedStatusListener queued = new QueuedStatusListener(recordingListener, 2, ListenerOverflowPolicy.BLOCK, executor);
+
+        assertDoesNotThrow(() -> queued.notify(AlarmStatus.ALARM));
+        assertEquals(1, queued.getLag().getDroppedEvents());
+        assertEquals(0, queued.getLag().getQueuedEvents());
+        assertDoesNotThrow(() -> queued.sensorStatusChanged());
+    }
+
+    @Test
+    public void close_stopsAcceptingEvents() {
+        QueuedStatusListener queued = new QueuedStatusListener(recordingListener, 2, ListenerOverflowPolicy.BLOCK, manualExecutor);
+
+        queued.close();
+        queued.sensorStatusChanged();
+        runPendingTasks();
+
+        assertTrue(received.isEmpty());
+    }
+}
@@ -0,0 +1,109 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.FakeSecurityRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests how the sampling rate follows arming, alarm and detection state.
+ */
+public class SamplingControllerTest {
+
+    private static final double DISARMED = 0;
+    private static final double IDLE = 0.2;
+    private static final double ARMED = 1;
+    private static final double ACTIVE = 10;
+
+    private final SamplingPolicy policy = new SamplingPolicy(DISARMED, IDLE, ARMED, ACTIVE,
+            Duration.ofSeconds(30), Duration.ofMinutes(10));
+    private SecurityService securityService;
+    private SamplingController controller;
+    private long now;
+
+    @BeforeEach
+    void init() {
+        securityService = new SecurityService(new FakeSecurityRepository(), new FakeImageService());
+        controller = new SamplingController(securityService, policy, () -> now);
+        securityService.addStatusListener(controller);
+    }
+
+    private void advance(Duration duration) {
+        now += duration.toNanos();
+    }
+
+    @Test
+    void disarmed_pausesSampling() {
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+        assertEquals(DISARMED, controller.getRate("door"));
+        assertFalse(controller.shouldSample("door"));
+    }
+
+    @Test
+    void armed_slowsDownOnceQuiet() {
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        assertEquals(ACTIVE, controller.getRate("door"));
+
+        advance(Duration.ofMinutes(1));
+        assertEquals(ARMED, controller.getRate("door"));
+
+        advance(Duration.ofMinutes(10));
+        assertEquals(IDLE, controller.getRate("door"));
+    }
+
+    @Test
+    void catOrAlarm_raisesRate() {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        advance(Duration.ofHours(1));
+        assertEquals(IDLE, controller.getRate("door"));
+
+        controller.catDetected(true);
+        assertEquals(ACTIVE, controller.getRate("door"));
+
+        advance(Duration.ofHours(1));
+        controller.notify(AlarmStatus.PENDING_ALARM);
+        advance(Duration.ofHours(1));
+        assertEquals(ACTIVE, controller.getRate("door"));
+    }
+
+    @Test
+    void cameraThatSawCat_staysActive_othersDoNot() {
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        advance(Duration.ofMinutes(5));
+        controller.recordVerdict("door", true);
+
+        Map<String, Double> rates = controller.getRates();
+        assertEquals(ACTIVE, rates.get("door"));
+        controller.recordVerdict("garden", false);
+        assertEquals(ARMED, controller.getRate("garden"));
+    }
+
+    @Test
+    void rateOfUnknownCamera_isReadWithoutRegisteringIt() {
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        advance(Duration.ofMinutes(5));
+
+        assertEquals(ARMED, controller.getRate("porch"));
+        assertFalse(controller.getRates().containsKey("porch"));
+    }
+
+    @Test
+    void shouldSample_letsFramesThroughAtCurrentRate() {
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        advance(Duration.ofMinutes(1));
+
+        assertTrue(controller.shouldSample("door"));
+        advance(Duration.ofMillis(500));
+        assertFalse(controller.shouldSample("door"));
+        advance(Duration.ofMillis(500));
+        assertTrue(controller.shouldSample("door"));
+        assertTrue(controller.shouldSample("garden"));
+    }
+}
@@ -18,6 +18,21 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyFloat;
 import static org.mockito.Mockito.when;
 
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -182,8 +197,11 @@ public class SecurityServiceIntegrationTest {
         // Mock image service
         when(imageService.imageContainsCat(any(), anyFloat())).thenReturn(false);
 
-        // Set all sensors to be inactive
-        securityService.getSensors().forEach(s -> s.setActive(false));
+        // Set all sensors to be inactive and store them so the repository's active count follows
+        securityService.getSensors().forEach(s -> {
+            s.setActive(false);
+            fakeSecurityRepository.updateSensor(s);
+        });
 
         // Trigger image detection
         securityService.processImage(null);
@@ -241,4 +259,410 @@ public class SecurityServiceIntegrationTest {
         // Verify alarm status is set to ALARM
         assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
     }
+
+    /**
+     * Sensor events arriving on many threads at once must not lose alarm transitions.
+     */
+    @Test
+    public void alarmStatus_isAlarm_whenSensorsAreActivatedConcurrently() throws Exception {
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            securityService.addSensor(sensor);
+            sensors.add(sensor);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (Sensor sensor : sensors) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    securityService.changeSensorActivationStatus(sensor, true);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        sensors.forEach(s -> assertTrue(fakeSecurityRepository.getSensors().contains(s) && s.getActive()));
+    }
+
+    /**
+     * A "no cat" verdict that arrives while a sensor activation is being stored must not clear the
+     * alarm the activation raised.
+     */
+    @Test
+    public void catClearedWhileSensorIsStored_doesNotLoseSensorAlarm() throws Exception {
+        CountDownLatch storing = new CountDownLatch(1);
+        SecurityRepository slowRepository = new FakeSecurityRepository() {
+            @Override
+            public void updateSensor(Sensor sensor) {
+                if (sensor.getActive()) {
+                    storing.countDown();
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                super.updateSensor(sensor);
+            }
+        };
+        SecurityService service = new SecurityService(slowRepository, imageService);
+        service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        Sensor sensor = new Sensor("Front Door", SensorType.DOOR);
+        service.addSensor(sensor);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> activation = executor.submit(() -> service.changeSensorActivationStatus(sensor, true));
+            assertTrue(storing.await(1, TimeUnit.SECONDS));
+            service.applyImageResult(service.nextImageSequence(), false);
+            activation.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(AlarmStatus.PENDING_ALARM, service.getAlarmStatus());
+    }
+
+    /**
+     * The alarm lock is only held for the transition, so a slow repository write for one sensor
+     * does not hold up a cat verdict or the alarm.
+     */
+    @Test
+    public void slowSensorWrite_doesNotBlockAlarmTransitions() throws Exception {
+        CountDownLatch storing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SecurityRepository slowRepository = new FakeSecurityRepository() {
+            @Override
+            public void updateSensor(Sensor sensor) {
+                if (sensor.getActive()) {
+                    storing.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                super.updateSensor(sensor);
+            }
+        };
+        SecurityService service = new SecurityService(slowRepository, imageService);
+        service.setArmingStatus(ArmingStatus.ARMED_HOME);
+        Sensor sensor = new Sensor("Front Door", SensorType.DOOR);
+        service.addSensor(sensor);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> activation = executor.submit(() -> service.changeSensorActivationStatus(sensor, true));
+            assertTrue(storing.await(1, TimeUnit.SECONDS));
+            Future<?> verdict = executor.submit(() -> service.applyImageResult(service.nextImageSequence(), true));
+            verdict.get(1, TimeUnit.SECONDS);
+            assertEquals(AlarmStatus.ALARM, service.getAlarmStatus());
+
+            release.countDown();
+            activation.get(1, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        assertEquals(AlarmStatus.ALARM, service.getAlarmStatus());
+    }
+
+    /**
+     * Listeners run after the service has released its locks, so another thread can change the
+     * alarm while a listener is still handling an event.
+     */
+    @Test
+    public void listeners_areCalledWithoutLocksHeld() throws Exception {
+        ExecutorService otherThread = Executors.newSingleThreadExecutor();
+        List<Boolean> otherThreadFinished = new ArrayList<>();
+        securityService.addStatusListener(new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                if (status != AlarmStatus.ALARM) {
+                    return;
+                }
+                Future<?> change = otherThread.submit(() -> securityService.setAlarmStatus(AlarmStatus.PENDING_ALARM));
+                try {
+                    change.get(1, TimeUnit.SECONDS);
+                    otherThreadFinished.add(true);
+                } catch (Exception e) {
+                    otherThreadFinished.add(false);
+                }
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+            }
+        });
+        try {
+            securityService.setAlarmStatus(AlarmStatus.ALARM);
+        } finally {
+            otherThread.shutdownNow();
+        }
+
+        assertEquals(List.of(true), otherThreadFinished);
+        assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+    }
+
+    /**
+     * A batch of activation changes ends in the same state as applying the changes one at a time.
+     */
+    @ParameterizedTest
+    @EnumSource(value = ArmingStatus.class)
+    public void batchedActivationChanges_matchSequentialChanges(ArmingStatus armingStatus) {
+        SecurityService sequentialService = new SecurityService(new FakeSecurityRepository(), imageService);
+        sequentialService.setArmingStatus(armingStatus);
+        securityService.setArmingStatus(armingStatus);
+
+        List<Sensor> batchSensors = new ArrayList<>(securityService.getSensors());
+        List<Sensor> sequentialSensors = new ArrayList<>(sequentialService.getSensors());
+        boolean[] activations = {true, false, true, true};
+
+        List<SensorActivation> changes = new ArrayList<>();
+        for (int i = 0; i < activations.length; i++) {
+            int sensorIndex = i % batchSensors.size();
+            changes.add(new SensorActivation(batchSensors.get(sensorIndex), activations[i]));
+            sequentialService.changeSensorActivationStatus(sequentialSensors.get(sensorIndex), activations[i]);
+        }
+        securityService.changeSensorActivationStatus(changes);
+
+        assertEquals(sequentialService.getAlarmStatus(), securityService.getAlarmStatus());
+        assertEquals(sequentialSensors.stream().map(Sensor::getActive).collect(Collectors.toList()),
+                batchSensors.stream().map(Sensor::getActive).collect(Collectors.toList()));
+    }
+
+    /**
+     * The running active-sensor counts follow adds, updates, removals and the reset on arming.
+     */
+    @Test
+    public void activeSensorCounts_followSensorChanges() {
+        // The fake repository starts with one active motion sensor
+        assertEquals(1, securityService.getActiveSensorCount());
+        assertEquals(1, securityService.getActiveSensorCount(SensorType.MOTION));
+
+        Sensor window = new Sensor("Window Sensor", SensorType.WINDOW, true);
+        securityService.addSensor(window);
+        assertEquals(2, securityService.getActiveSensorCount());
+        assertEquals(1, securityService.getActiveSensorCount(SensorType.WINDOW));
+
+        securityService.changeSensorActivationStatus(window, false);
+        assertEquals(0, securityService.getActiveSensorCount(SensorType.WINDOW));
+
+        securityService.changeSensorActivationStatus(window, true);
+        securityService.removeSensor(window);
+        assertEquals(1, securityService.getActiveSensorCount());
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        assertEquals(0, securityService.getActiveSensorCount());
+        assertEquals(0, securityService.getActiveSensorCount(SensorType.MOTION));
+    }
+
+    /**
+     * The sensor snapshot is only rebuilt when sensors are added or removed, and stays in sensor order.
+     */
+    @Test
+    public void sensorSnapshot_isReused_untilSensorSetChanges() {
+        SensorSnapshot snapshot = securityService.getSensorSnapshot();
+        Sensor sensor = snapshot.getSensors().first();
+
+        // Activation changes don't change the set, so readers keep getting the same snapshot
+        securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+        assertSame(snapshot, securityService.getSensorSnapshot());
+        assertSame(snapshot.getSensors(), securityService.getSensors());
+
+        securityService.addSensor(new Sensor("Attic Sensor", SensorType.WINDOW));
+        SensorSnapshot updated = securityService.getSensorSnapshot();
+        assertTrue(updated.getVersion() > snapshot.getVersion());
+        assertEquals(snapshot.getSensors().size() + 1, updated.getSensors().size());
+        assertIterableEquals(new TreeSet<>(updated.getSensors()), updated.getSensors());
+        assertThrows(UnsupportedOperationException.class, () -> updated.getSensors().clear());
+    }
+
+    /**
+     * With queued dispatch a listener that is stuck does not hold up the engine, and its lag is reported.
+     */
+    @Test
+    public void queuedDispatch_doesNotWaitForSlowListener() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch delivered = new CountDownLatch(3);
+        StatusListener slowListener = new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                delivered.countDown();
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+            }
+        };
+        securityService.addStatusListener(slowListener);
+        securityService.useQueuedListenerDispatch(16, ListenerOverflowPolicy.BLOCK);
+
+        securityService.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        securityService.setAlarmStatus(AlarmStatus.ALARM);
+        securityService.setAlarmStatus(AlarmStatus.NO_ALARM);
+
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+        assertTrue(securityService.getListenerLag(slowListener).getQueuedEvents() >= 2);
+
+        release.countDown();
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        securityService.useSynchronousListenerDispatch();
+    }
+
+    /**
+     * A full blocking listener holds back the threads sending events, but the other listeners keep
+     * getting every event.
+     */
+    @Test
+    public void fullBlockingListener_doesNotStopDeliveryToOtherListeners() throws Exception {
+        CountDownLatch stuck = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        StatusListener stuckListener = new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                stuck.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+            }
+        };
+        BlockingQueue<AlarmStatus> received = new LinkedBlockingQueue<>();
+        StatusListener otherListener = new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                received.add(status);
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+            }
+        };
+        securityService.addStatusListener(stuckListener);
+        securityService.addStatusListener(otherListener);
+        securityService.useQueuedListenerDispatch(1, ListenerOverflowPolicy.BLOCK);
+        ExecutorService senders = Executors.newFixedThreadPool(2);
+        try {
+            securityService.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+            assertTrue(stuck.await(5, TimeUnit.SECONDS));
+            assertEquals(AlarmStatus.PENDING_ALARM, received.poll(5, TimeUnit.SECONDS));
+
+            // fills the stuck listener's queue, so this sender waits for room
+            Future<?> alarm = senders.submit(() -> securityService.setAlarmStatus(AlarmStatus.ALARM));
+            assertEquals(AlarmStatus.ALARM, received.poll(5, TimeUnit.SECONDS));
+            Future<?> noAlarm = senders.submit(() -> securityService.setAlarmStatus(AlarmStatus.NO_ALARM));
+            assertEquals(AlarmStatus.NO_ALARM, received.poll(5, TimeUnit.SECONDS));
+            assertFalse(alarm.isDone());
+            assertFalse(noAlarm.isDone());
+
+            release.countDown();
+            alarm.get(5, TimeUnit.SECONDS);
+            noAlarm.get(5, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            senders.shutdownNow();
+            securityService.useSynchronousListenerDispatch();
+        }
+    }
+
+    /**
+     * An asynchronous scan changes the alarm only once the analysis has finished.
+     */
+    @Test
+    public void asyncImageResult_isAppliedWhenAnalysisCompletes() {
+        Queue<Runnable> pendingAnalyses = new ArrayDeque<>();
+        SecurityService asyncService = new SecurityService(fakeSecurityRepository, (image, threshold) -> true);
+        asyncService.setImageAnalysisExecutor(pendingAnalyses::add);
+        asyncService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        CompletableFuture<Boolean> scan = asyncService.processImageAsync(null);
+        assertFalse(scan.isDone());
+        assertEquals(AlarmStatus.NO_ALARM, asyncService.getAlarmStatus());
+
+        pendingAnalyses.poll().run();
+        assertTrue(scan.join());
+        assertEquals(AlarmStatus.ALARM, asyncService.getAlarmStatus());
+    }
+
+    /**
+     * A verdict that arrives after the verdict on a newer image is not applied.
+     */
+    @Test
+    public void asyncImageResult_olderThanAppliedResult_isIgnored() {
+        BufferedImage catImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        BufferedImage emptyImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        Deque<Runnable> pendingAnalyses = new ArrayDeque<>();
+        SecurityService asyncService = new SecurityService(fakeSecurityRepository, (image, threshold) -> image == catImage);
+        asyncService.setImageAnalysisExecutor(pendingAnalyses::add);
+        asyncService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        fakeSecurityRepository.getSensors().forEach(s -> asyncService.changeSensorActivationStatus(s, false));
+
+        CompletableFuture<Boolean> olderScan = asyncService.processImageAsync(catImage);
+        CompletableFuture<Boolean> newerScan = asyncService.processImageAsync(emptyImage);
+        pendingAnalyses.pollLast().run();
+        pendingAnalyses.pollLast().run();
+
+        assertFalse(newerScan.join());
+        assertTrue(olderScan.join());
+        assertFalse(asyncService.getCatDetectedStatus());
+        assertEquals(AlarmStatus.NO_ALARM, asyncService.getAlarmStatus());
+    }
+
+    /**
+     * A cancelled scan never runs and leaves the alarm alone.
+     */
+    @Test
+    public void cancelledAsyncScan_leavesAlarmAlone() {
+        Queue<Runnable> pendingAnalyses = new ArrayDeque<>();
+        SecurityService asyncService = new SecurityService(fakeSecurityRepository, (image, threshold) -> true);
+        asyncService.setImageAnalysisExecutor(pendingAnalyses::add);
+        asyncService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        CompletableFuture<Boolean> scan = asyncService.processImageAsync(null);
+        scan.cancel(true);
+        pendingAnalyses.poll().run();
+
+        assertTrue(scan.isCancelled());
+        assertEquals(AlarmStatus.NO_ALARM, asyncService.getAlarmStatus());
+    }
 }
@@ -189,12 +189,8 @@ public class SecurityServiceTest {
      */
     @Test
     public void activeStatus_setToNoAlarm_whenImageServiceDoesntSeeACat_andSensorsAreNotActive() {
-        // Set all Sensors to be inactive
-        Set<Sensor> sensors = getSensors();
-        sensors.forEach(s -> s.setActive(false));
-
-        // Mock securityRepository to return these sensors
-        when(securityRepository.getSensors()).thenReturn(new HashSet<>(sensors));
+        // Mock securityRepository to report no active sensors
+        when(securityRepository.getActiveSensorCount()).thenReturn(0);
 
         // Mock imageService to never see a cat
         when(imageService.imageContainsCat(any(), anyFloat())).thenReturn(false);
@@ -211,12 +207,8 @@ public class SecurityServiceTest {
      */
     @Test
     public void testActiveStatus_remainsUnchanged_whenImageServiceDoesntDetectACat_andASensorIsActive() {
-        // Set all Sensors to be inactive
-        Set<Sensor> sensors = getSensors();
-        new ArrayList<>(sensors).get(0).setActive(true);
-
-        // Mock securityRepository to return these sensors
-        when(securityRepository.getSensors()).thenReturn(new HashSet<>(sensors));
+        // Mock securityRepository to report one active sensor
+        when(securityRepository.getActiveSensorCount()).thenReturn(1);
 
         // Mock imageService to never see a cat
         when(imageService.imageContainsCat(any(), anyFloat())).thenReturn(false);
@@ -259,8 +251,8 @@ public class SecurityServiceTest {
         // Set system to be armed
         securityService.setArmingStatus(armingStatus);
 
-        // Verify securityRepository was called to update the sensor
-        verify(securityRepository, atLeast(sensors.size())).updateSensor(any(Sensor.class));
+        // Verify securityRepository was called to update the sensors, once for the whole reset
+        verify(securityRepository).updateSensors(anyCollection());
 
         // Check that each sensor has been set to inactive
         sensors.forEach(s -> assertEquals(false, s.getActive()));
@@ -287,4 +279,33 @@ public class SecurityServiceTest {
         // Verify method to change alarm status was called
         verify(securityRepository).setAlarmStatus(AlarmStatus.ALARM);
     }
+
+    /**
+     * A batch of activation changes writes the repository and the alarm status once.
+     */
+    @Test
+    public void batchedActivationChanges_writeRepositoryOnce() {
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_AWAY);
+        when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+
+        List<SensorActivation> changes = generateSensors().stream()
+                .map(s -> new SensorActivation(s, true))
+                .collect(Collectors.toList());
+        securityService.changeSensorActivationStatus(changes);
+
+        verify(securityRepository, times(1)).updateSensors(anyCollection());
+        verify(securityRepository, never()).updateSensor(any(Sensor.class));
+        verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    /**
+     * Removing several sensors writes the repository once.
+     */
+    @Test
+    public void removingSeveralSensors_writesRepositoryOnce() {
+        securityService.removeSensors(generateSensors());
+
+        verify(securityRepository, times(1)).removeSensors(anyCollection());
+        verify(securityRepository, never()).removeSensor(any(Sensor.class));
+    }
 }